@@ -0,0 +1,57 @@
+package chess;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import boardgame.Piece;
+import boardgame.Position;
+import chess.pieces.Knight;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+	private ChessBoard board;
+	private Knight knight;
+	private Position occupied;
+	private Position empty;
+
+	@Setup
+	public void setup() {
+		board = new ChessBoard();
+		board.placePiece(new Knight(board, Color.WHITE), new Position(7, 1));
+		knight = new Knight(board, Color.BLACK);
+		occupied = new Position(7, 1);
+		empty = new Position(4, 4);
+	}
+
+	@Benchmark
+	public Piece piece() {
+		return board.piece(occupied);
+	}
+
+	@Benchmark
+	public Piece pieceByRowAndColumn() {
+		return board.piece(7, 1);
+	}
+
+	@Benchmark
+	public Piece placeAndRemovePiece() {
+		board.placePiece(knight, empty);
+		return board.removePiece(empty);
+	}
+}
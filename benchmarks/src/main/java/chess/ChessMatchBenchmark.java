@@ -0,0 +1,66 @@
+package chess;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessMatchBenchmark {
+
+	@Param({ "opening", "middlegame", "check" })
+	public String position;
+
+	private ChessMatch match;
+	private Color toMove;
+	private int[] moves;
+	private ChessPosition source;
+	private ChessPosition target;
+
+	@Setup
+	public void setup() {
+		match = Positions.get(position);
+		toMove = match.getCurrentPlayer();
+		moves = new int[ChessMatch.MAX_MOVES];
+		int move = match.legalMoves()[0];
+		source = Positions.square(Move.from(move));
+		target = Positions.square(Move.to(move));
+	}
+
+	@Benchmark
+	public boolean testCheck() {
+		return match.testCheck(toMove);
+	}
+
+	@Benchmark
+	public boolean testCheckMate() {
+		return match.testCheckMate(toMove);
+	}
+
+	@Benchmark
+	public int legalMoves() {
+		return match.legalMoves(moves);
+	}
+
+	// the move is taken back right away so every invocation starts from the same position
+	@Benchmark
+	public ChessPiece performChessMove() {
+		ChessPiece captured = match.performChessMove(source, target);
+		match.undoMove();
+		return captured;
+	}
+}
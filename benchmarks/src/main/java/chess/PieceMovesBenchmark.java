@@ -0,0 +1,57 @@
+package chess;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// move generation of one white piece of each type in the middlegame position
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceMovesBenchmark {
+
+	@Param({ "PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING" })
+	public PieceType type;
+
+	private ChessPiece piece;
+	private int[] moves;
+
+	@Setup
+	public void setup() {
+		for (ChessPiece[] row : Positions.get("middlegame").getPieces()) {
+			for (ChessPiece p : row) {
+				if (p != null && p.getColor() == Color.WHITE && p.getType() == type && piece == null)
+					piece = p;
+			}
+		}
+		moves = new int[ChessMatch.MAX_MOVES];
+	}
+
+	@Benchmark
+	public boolean[][] possibleMoves() {
+		return piece.possibleMoves();
+	}
+
+	@Benchmark
+	public long targets() {
+		return piece.targets();
+	}
+
+	@Benchmark
+	public int generateMoves() {
+		return piece.generateMoves(moves, 0);
+	}
+}
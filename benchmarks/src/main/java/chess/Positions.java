@@ -0,0 +1,37 @@
+package chess;
+
+// positions shared by the benchmarks, reached by playing moves from the initial setup
+final class Positions {
+
+	private Positions() {
+	}
+
+	static ChessMatch get(String name) {
+		switch (name) {
+		case "opening":
+			return new ChessMatch();
+		case "middlegame":
+			return play("e2e4", "e7e5", "g1f3", "b8c6", "f1c4", "f8c5", "c2c3", "g8f6", "d2d3", "d7d6", "e1g1",
+					"e8g8");
+		case "check":
+			return play("e2e4", "e7e5", "f1c4", "d7d6", "c4f7");
+		case "checkmate":
+			return play("e2e4", "e7e5", "f1c4", "b8c6", "d1h5", "g8f6", "h5f7");
+		default:
+			throw new IllegalArgumentException("Unknown position " + name);
+		}
+	}
+
+	static ChessPosition square(int square) {
+		return new ChessPosition((char) ('a' + ChessBoard.column(square)), 8 - ChessBoard.row(square));
+	}
+
+	private static ChessMatch play(String... moves) {
+		ChessMatch match = new ChessMatch();
+		for (String move : moves) {
+			match.performChessMove(new ChessPosition(move.charAt(0), move.charAt(1) - '0'),
+					new ChessPosition(move.charAt(2), move.charAt(3) - '0'));
+		}
+		return match;
+	}
+}
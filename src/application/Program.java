@@ -1,29 +1,31 @@
 package application;
 
-import java.util.ArrayList;
 import java.util.InputMismatchException;
-import java.util.List;
 import java.util.Scanner;
 
 import chess.ChessException;
 import chess.ChessMatch;
-import chess.ChessPiece;
 import chess.ChessPosition;
 
 public class Program {
 
 	public static void main(String[] args) {
-		ChessMatch chessMatch = new ChessMatch();
+		// a FEN given on the command line sets up the board, otherwise the game starts from the initial position
+		ChessMatch chessMatch = (args.length > 0) ? ChessMatch.fromFen(String.join(" ", args)) : new ChessMatch();
 		Scanner sc = new Scanner(System.in);
-		List<ChessPiece> captured = new ArrayList<>();
-		while (!chessMatch.getCheckmate()) {
+		while (!chessMatch.getCheckmate() && chessMatch.getDraw() == null) {
 			try {
 				UI.clearScreen();
-				UI.printMatch(chessMatch, captured);
+				UI.printMatch(chessMatch, chessMatch.getCapturedPieces());
 				//UI.printBoard(chessMatch.getPieces());
 				System.out.println();
-				System.out.print("Source: ");
-				ChessPosition source = UI.readChessPosition(sc);
+				System.out.print("Source (or undo/redo): ");
+				String input = sc.nextLine().trim();
+				if (input.equalsIgnoreCase("undo") || input.equalsIgnoreCase("redo")) {
+					takeBack(chessMatch, input.equalsIgnoreCase("undo"));
+					continue;
+				}
+				ChessPosition source = UI.parseChessPosition(input);
 				
 				boolean[][] possibleMoves = chessMatch.possibleMoves(source);
 				UI.clearScreen();
@@ -33,8 +35,7 @@ public class Program {
 				System.out.print("Target: ");
 				ChessPosition target = UI.readChessPosition(sc);
 
-				ChessPiece capturedPiece = chessMatch.performChessMove(source, target);
-				if(capturedPiece != null) captured.add(capturedPiece);
+				chessMatch.performChessMove(source, target);
 				
 				if (chessMatch.getPromoted() != null) {
 					System.out.print("Enter piece for promotion (B/N/R/Q): ");
@@ -55,7 +56,18 @@ public class Program {
 			}
 		}
 		UI.clearScreen();
-		UI.printMatch(chessMatch, captured);
+		UI.printMatch(chessMatch, chessMatch.getCapturedPieces());
+	}
+
+	private static void takeBack(ChessMatch chessMatch, boolean undo) {
+		if (undo && !chessMatch.canUndo())
+			throw new ChessException("There is no move to undo");
+		if (!undo && !chessMatch.canRedo())
+			throw new ChessException("There is no move to redo");
+		if (undo)
+			chessMatch.undoMove();
+		else
+			chessMatch.redoMove();
 	}
 
 }
@@ -39,11 +39,14 @@ public class UI {
 	}
 
 	public static ChessPosition readChessPosition(Scanner sc) {
+		return parseChessPosition(sc.nextLine());
+	}
+
+	public static ChessPosition parseChessPosition(String s) {
 		try {
-			String s = sc.nextLine();
 			char column = s.charAt(0);
 			int row = Integer.parseInt(s.substring(1));
-			return new ChessPosition(column, row);
+			return ChessPosition.of(column, row);
 		} catch (RuntimeException e) {
 			throw new InputMismatchException("Error reading ChessPosition. Valid values are from a1 to h8");
 		}
@@ -55,7 +58,11 @@ public class UI {
 		printCapturedPieces(captured);
 		System.out.println();
 		System.out.println("Turn: " + cm.getTurn());
-		if (!cm.getCheckmate()) {
+		if (cm.getStalemate()) {
+			System.out.println("STALEMATE!");
+		}else if (cm.getDraw() != null) {
+			System.out.println("DRAW! " + cm.getDraw());
+		}else if (!cm.getCheckmate()) {
 			System.out.println("Waiting player: " + cm.getCurrentPlayer());
 			if (cm.getCheck()) {
 				System.out.println("CHECK!");
@@ -17,6 +17,12 @@ public class Board {
 		this.columns = n;
 		this.pieces = new Piece[n][n];
 	}
+	// for a subclass that keeps the pieces itself: pieces may be null if it overrides piece, placePiece and removePiece
+	protected Board(int rows, int columns, Piece[][] pieces) {
+		this.rows = rows;
+		this.columns = columns;
+		this.pieces = pieces;
+	}
 	
 	public int getRows() {
 		return rows;
@@ -54,6 +60,11 @@ public class Board {
 		return tmp;
 	}
 	
+	// sets the position a piece believes it is on, for subclasses that keep the pieces themselves
+	protected static void setPosition(Piece piece, Position position) {
+		piece.position = position;
+	}
+	
 	public boolean positionExists(int row, int col) {
 		return row >= 0 && row < rows && col >= 0 && col < columns;
 	}
@@ -1,34 +1,54 @@
 package boardgame;
 
 public class Position {
-	private int row;
-	private int column;
-	
+	// positions never change, so those of boards up to 8x8 are shared
+	private static final int CACHED = 8;
+	private static final Position[] CACHE = new Position[CACHED * CACHED];
+
+	static {
+		for (int i = 0; i < CACHE.length; i++) {
+			CACHE[i] = new Position(i / CACHED, i % CACHED);
+		}
+	}
+
+	private final int row;
+	private final int column;
+
 	public Position(int row, int column) {
 		super();
 		this.row = row;
 		this.column = column;
 	}
 
-	public int getRow() {
-		return row;
+	public static Position of(int row, int column) {
+		if (row >= 0 && row < CACHED && column >= 0 && column < CACHED)
+			return CACHE[row * CACHED + column];
+		return new Position(row, column);
 	}
 
-	public void setRow(int row) {
-		this.row = row;
+	public int getRow() {
+		return row;
 	}
 
 	public int getColumn() {
 		return column;
 	}
 
-	public void setColumn(int column) {
-		this.column = column;
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Position))
+			return false;
+		Position other = (Position) obj;
+		return row == other.row && column == other.column;
 	}
-	public void setValues(int row, int column) {
-		this.row = row;
-		this.column = column;
+
+	@Override
+	public int hashCode() {
+		return 31 * row + column;
 	}
+
 	@Override
 	public String toString() {
 		return row + ", " + column;
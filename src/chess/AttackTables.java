@@ -0,0 +1,128 @@
+package chess;
+
+/*
+ * Tables filled once when the class is loaded, shared by the board, the
+ * pieces and the move generator:
+ *
+ *   KNIGHT, KING    destinations of a leaper per square
+ *   PAWN            squares a pawn attacks, per color ordinal and square
+ *   RAYS            squares seen from a square in each direction on an empty board
+ *   BETWEEN         squares strictly between two aligned squares, 0 otherwise
+ *   LINE            the whole rank, file or diagonal through two aligned squares, 0 otherwise
+ *
+ * The slider functions use the classical ray method: the nearest blocker
+ * along a ray is its first or last set bit, depending on the direction, and
+ * the ray behind it is cut off with the ray of the blocker. The board looks
+ * sliders up in MagicBitboards, which is filled from them. About 70 KB in all.
+ */
+final class AttackTables {
+	// directions as (row, column) steps: straight ones first, then diagonals, each next to its opposite
+	static final int NORTH = 0;
+	static final int SOUTH = 1;
+	static final int WEST = 2;
+	static final int EAST = 3;
+	static final int NORTH_WEST = 4;
+	static final int SOUTH_EAST = 5;
+	static final int NORTH_EAST = 6;
+	static final int SOUTH_WEST = 7;
+	static final int[][] DIRECTIONS = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 }, { -1, -1 }, { 1, 1 },
+			{ -1, 1 }, { 1, -1 } };
+
+	private static final int SQUARES = ChessBoard.SIZE * ChessBoard.SIZE;
+	private static final int[][] KNIGHT_OFFSETS = { { -2, -1 }, { -2, 1 }, { -1, -2 }, { -1, 2 }, { 1, -2 },
+			{ 1, 2 }, { 2, -1 }, { 2, 1 } };
+
+	static final long[] KNIGHT = new long[SQUARES];
+	static final long[] KING = new long[SQUARES];
+	static final long[][] PAWN = new long[Color.values().length][SQUARES];
+	static final long[][] RAYS = new long[DIRECTIONS.length][SQUARES];
+	// empty board attacks of the sliders, the union of four rays
+	static final long[] BISHOP = new long[SQUARES];
+	static final long[] ROOK = new long[SQUARES];
+	static final long[][] BETWEEN = new long[SQUARES][SQUARES];
+	static final long[][] LINE = new long[SQUARES][SQUARES];
+
+	static {
+		for (int square = 0; square < SQUARES; square++) {
+			KNIGHT[square] = leaper(square, KNIGHT_OFFSETS);
+			KING[square] = leaper(square, DIRECTIONS);
+			for (Color color : Color.values()) {
+				int forward = (color == Color.WHITE) ? -1 : 1;
+				PAWN[color.ordinal()][square] = leaper(square, new int[][] { { forward, -1 }, { forward, 1 } });
+			}
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				RAYS[d][square] = ray(square, DIRECTIONS[d]);
+			}
+			BISHOP[square] = RAYS[NORTH_WEST][square] | RAYS[NORTH_EAST][square] | RAYS[SOUTH_WEST][square]
+					| RAYS[SOUTH_EAST][square];
+			ROOK[square] = RAYS[NORTH][square] | RAYS[SOUTH][square] | RAYS[WEST][square] | RAYS[EAST][square];
+		}
+		for (int a = 0; a < SQUARES; a++) {
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				long ray = RAYS[d][a];
+				// the opposite direction is the other one of its pair
+				long line = ray | RAYS[d ^ 1][a] | (1L << a);
+				while (ray != 0) {
+					int b = Long.numberOfTrailingZeros(ray);
+					ray &= ray - 1;
+					BETWEEN[a][b] = RAYS[d][a] & ~RAYS[d][b] & ~(1L << b);
+					LINE[a][b] = line;
+				}
+			}
+		}
+	}
+
+	private AttackTables() {
+	}
+
+	static long bishopAttacks(int square, long occupied) {
+		return up(NORTH_WEST, square, occupied) | up(NORTH_EAST, square, occupied)
+				| down(SOUTH_WEST, square, occupied) | down(SOUTH_EAST, square, occupied);
+	}
+
+	static long rookAttacks(int square, long occupied) {
+		return up(NORTH, square, occupied) | up(WEST, square, occupied) | down(SOUTH, square, occupied)
+				| down(EAST, square, occupied);
+	}
+
+	// a ray towards lower squares, cut behind its nearest blocker, the highest one
+	private static long up(int direction, int square, long occupied) {
+		long ray = RAYS[direction][square];
+		long blockers = ray & occupied;
+		if (blockers == 0)
+			return ray;
+		return ray ^ RAYS[direction][63 - Long.numberOfLeadingZeros(blockers)];
+	}
+
+	// a ray towards higher squares, cut behind its nearest blocker, the lowest one
+	private static long down(int direction, int square, long occupied) {
+		long ray = RAYS[direction][square];
+		long blockers = ray & occupied;
+		if (blockers == 0)
+			return ray;
+		return ray ^ RAYS[direction][Long.numberOfTrailingZeros(blockers)];
+	}
+
+	private static long leaper(int square, int[][] offsets) {
+		long attacks = 0L;
+		for (int[] offset : offsets) {
+			int row = ChessBoard.row(square) + offset[0];
+			int col = ChessBoard.column(square) + offset[1];
+			if (row >= 0 && row < ChessBoard.SIZE && col >= 0 && col < ChessBoard.SIZE)
+				attacks |= 1L << ChessBoard.square(row, col);
+		}
+		return attacks;
+	}
+
+	private static long ray(int square, int[] direction) {
+		long ray = 0L;
+		int row = ChessBoard.row(square) + direction[0];
+		int col = ChessBoard.column(square) + direction[1];
+		while (row >= 0 && row < ChessBoard.SIZE && col >= 0 && col < ChessBoard.SIZE) {
+			ray |= 1L << ChessBoard.square(row, col);
+			row += direction[0];
+			col += direction[1];
+		}
+		return ray;
+	}
+}
@@ -0,0 +1,227 @@
+package chess;
+
+import boardgame.Board;
+import boardgame.BoardException;
+import boardgame.Piece;
+import boardgame.Position;
+
+/*
+ * 8x8 board that keeps one 64 bit set per color and piece type, plus the
+ * piece on each square, instead of the Piece[][] of the base class. Square
+ * n is row * 8 + column, so bit 0 is a8 and bit 63 is h1, the same
+ * orientation used by Position.
+ *
+ * It also keeps the square of each king, so finding one is a lookup.
+ */
+public class ChessBoard extends Board {
+	public static final int SIZE = 8;
+
+	private static final int TYPES = PieceType.values().length;
+
+	private final ChessPiece[] squares;
+	private final long[] bitboards;
+	private final long[] colors;
+	private final int[] kingSquares;
+	private long occupied;
+	private long key;
+
+	public ChessBoard() {
+		super(SIZE, SIZE, null);
+		squares = new ChessPiece[SIZE * SIZE];
+		bitboards = new long[Color.values().length * TYPES];
+		colors = new long[Color.values().length];
+		kingSquares = new int[] { -1, -1 };
+	}
+
+	public static int square(int row, int column) {
+		return row * SIZE + column;
+	}
+
+	public static int square(Position position) {
+		return square(position.getRow(), position.getColumn());
+	}
+
+	public static int row(int square) {
+		return square >>> 3;
+	}
+
+	public static int column(int square) {
+		return square & 7;
+	}
+
+	@Override
+	public Piece piece(int row, int column) {
+		if (!positionExists(row, column))
+			throw new BoardException("Position not on the board");
+		return squares[square(row, column)];
+	}
+
+	@Override
+	public Piece piece(Position position) {
+		return piece(position.getRow(), position.getColumn());
+	}
+
+	@Override
+	public void placePiece(Piece piece, Position position) {
+		if (containsPiece(position))
+			throw new BoardException("Theres already a piece in position " + position);
+		ChessPiece p = (ChessPiece) piece;
+		int sq = square(position);
+		long bit = 1L << sq;
+		squares[sq] = p;
+		setPosition(p, position);
+		bitboards[index(p.getColor(), p.getType())] |= bit;
+		colors[p.getColor().ordinal()] |= bit;
+		occupied |= bit;
+		key ^= Zobrist.piece(p.getColor(), p.getType(), sq);
+		if (p.getType() == PieceType.KING)
+			kingSquares[p.getColor().ordinal()] = sq;
+	}
+
+	@Override
+	public Piece removePiece(Position position) {
+		Piece piece = piece(position);
+		if (piece != null) {
+			ChessPiece p = (ChessPiece) piece;
+			int sq = square(position);
+			long bit = ~(1L << sq);
+			squares[sq] = null;
+			setPosition(p, null);
+			bitboards[index(p.getColor(), p.getType())] &= bit;
+			colors[p.getColor().ordinal()] &= bit;
+			occupied &= bit;
+			key ^= Zobrist.piece(p.getColor(), p.getType(), sq);
+			if (p.getType() == PieceType.KING)
+				kingSquares[p.getColor().ordinal()] = -1;
+		}
+		return piece;
+	}
+
+	public ChessPiece pieceAt(int square) {
+		return squares[square];
+	}
+
+	public long getOccupied() {
+		return occupied;
+	}
+
+	// Zobrist key of the piece placement alone, kept up to date by placePiece/removePiece
+	public long getKey() {
+		return key;
+	}
+
+	public long getPieces(Color color) {
+		return colors[color.ordinal()];
+	}
+
+	public long getPieces(Color color, PieceType type) {
+		return bitboards[index(color, type)];
+	}
+
+	// square of the king of that color, or -1 if it is not on the board
+	public int getKingSquare(Color color) {
+		return kingSquares[color.ordinal()];
+	}
+
+	// squares attacked by the piece standing on the given square
+	public long attacks(int square) {
+		ChessPiece p = squares[square];
+		if (p == null)
+			return 0L;
+		switch (p.getType()) {
+		case PAWN:
+			return pawnAttacks(square, p.getColor());
+		case KNIGHT:
+			return knightAttacks(square);
+		case BISHOP:
+			return bishopAttacks(square);
+		case ROOK:
+			return rookAttacks(square);
+		case QUEEN:
+			return bishopAttacks(square) | rookAttacks(square);
+		default:
+			return kingAttacks(square);
+		}
+	}
+
+	// every square attacked by at least one piece of the given color
+	public long attackedBy(Color color) {
+		long attacked = 0L;
+		long pieces = colors[color.ordinal()];
+		while (pieces != 0) {
+			attacked |= attacks(Long.numberOfTrailingZeros(pieces));
+			pieces &= pieces - 1;
+		}
+		return attacked;
+	}
+
+	// pieces of the given color attacking the square, found by casting rays outward from it
+	public long attackersOf(int square, Color color) {
+		return attackersOf(square, color, occupied);
+	}
+
+	// same as above, with the slider rays blocked by the given occupancy instead of the current one
+	public long attackersOf(int square, Color color, long occupied) {
+		Color opponent = (color == Color.WHITE) ? Color.BLACK : Color.WHITE;
+		long queens = getPieces(color, PieceType.QUEEN);
+		return (pawnAttacks(square, opponent) & getPieces(color, PieceType.PAWN))
+				| (knightAttacks(square) & getPieces(color, PieceType.KNIGHT))
+				| (kingAttacks(square) & getPieces(color, PieceType.KING))
+				| (bishopAttacks(square, occupied) & (getPieces(color, PieceType.BISHOP) | queens))
+				| (rookAttacks(square, occupied) & (getPieces(color, PieceType.ROOK) | queens));
+	}
+
+	public boolean isAttacked(int square, Color color) {
+		return isAttacked(square, color, occupied);
+	}
+
+	public boolean isAttacked(int square, Color color, long occupied) {
+		Color opponent = (color == Color.WHITE) ? Color.BLACK : Color.WHITE;
+		if ((pawnAttacks(square, opponent) & getPieces(color, PieceType.PAWN)) != 0)
+			return true;
+		if ((knightAttacks(square) & getPieces(color, PieceType.KNIGHT)) != 0)
+			return true;
+		if ((kingAttacks(square) & getPieces(color, PieceType.KING)) != 0)
+			return true;
+		long queens = getPieces(color, PieceType.QUEEN);
+		long diagonal = getPieces(color, PieceType.BISHOP) | queens;
+		// sliders off the lines through the square are skipped without looking at blockers
+		if ((AttackTables.BISHOP[square] & diagonal) != 0 && (bishopAttacks(square, occupied) & diagonal) != 0)
+			return true;
+		long straight = getPieces(color, PieceType.ROOK) | queens;
+		return (AttackTables.ROOK[square] & straight) != 0 && (rookAttacks(square, occupied) & straight) != 0;
+	}
+
+	public long bishopAttacks(int square) {
+		return bishopAttacks(square, occupied);
+	}
+
+	public long rookAttacks(int square) {
+		return rookAttacks(square, occupied);
+	}
+
+	// attack functions are lookups in MagicBitboards and AttackTables
+	public static long bishopAttacks(int square, long occupied) {
+		return MagicBitboards.bishopAttacks(square, occupied);
+	}
+
+	public static long rookAttacks(int square, long occupied) {
+		return MagicBitboards.rookAttacks(square, occupied);
+	}
+
+	public static long knightAttacks(int square) {
+		return AttackTables.KNIGHT[square];
+	}
+
+	public static long kingAttacks(int square) {
+		return AttackTables.KING[square];
+	}
+
+	public static long pawnAttacks(int square, Color color) {
+		return AttackTables.PAWN[color.ordinal()][square];
+	}
+
+	private static int index(Color color, PieceType type) {
+		return color.ordinal() * TYPES + type.ordinal();
+	}
+}
@@ -2,10 +2,9 @@ package chess;
 
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
-import boardgame.Board;
 import boardgame.Piece;
 import boardgame.Position;
 import chess.pieces.Bishop;
@@ -16,26 +15,221 @@ import chess.pieces.Queen;
 import chess.pieces.Rook;
 
 public class ChessMatch {
-	private Board board;
+	public static final int MAX_MOVES = 256;
+
+	private static final Color[] COLORS = Color.values();
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private ChessBoard board;
+	private MoveGenerator moveGenerator;
 	private final int dim = 8;
 	private int turn;
 	private Color currentPlayer;
 	private boolean check;
 	private boolean checkMate;
+	private boolean stalemate;
+	private DrawReason draw;
+	// plies since the last capture or pawn move
+	private int halfmoveClock;
 	private ChessPiece enPassantVulnerable;
 	private ChessPiece promoted;
+	private long hash;
 
-	private List<Piece> piecesOnTheBoard;
 	private List<Piece> capturedPieces;
+	// the positions since the last capture or pawn move, the current one included
+	private final RepetitionTable repetitions;
+
+	private static final int[] NO_MOVES = new int[0];
+	private static final long[] NO_STATES = new long[0];
+
+	// undo records packed in a long: the en passant pawn, the promoted piece and the captured piece by square,
+	// NO_SQUARE if there is none, then the flags with the DrawReason ordinal + 1 and the halfmove clock before the
+	// move; the turn before the move is one less unless the move ended the game
+	private static final int NO_SQUARE = 127;
+	private static final int PROMOTED_SHIFT = 7;
+	private static final int CAPTURED_SHIFT = 14;
+	private static final int FLAGS_SHIFT = 21;
+	private static final int CLOCK_SHIFT = 32;
+	private static final int CHECK = 1;
+	private static final int CHECKMATE = 2;
+	private static final int STALEMATE = 4;
+	private static final int WHITE_TO_MOVE = 8;
+	private static final int DRAW_SHIFT = 4;
+	private static final DrawReason[] DRAW_REASONS = DrawReason.values();
+	private static final int FIFTY_MOVES = 100;
+	// a8 is a light square
+	private static final long LIGHT_SQUARES = 0xAA55AA55AA55AA55L;
+
+	// one entry per ply: the move, the undo record and the position key before the move; the moves from ply up to
+	// redoLimit were taken back and can be made again
+	private int[] history = NO_MOVES;
+	private long[] states = NO_STATES;
+	private long[] keys = NO_STATES;
+	private int ply;
+	private int redoLimit;
+	// position before the first move of the history, taken when that move is made
+	private ChessSnapshot initialPosition;
 
 	public ChessMatch() {
-		board = new Board(dim);
+		board = new ChessBoard();
+		moveGenerator = new MoveGenerator(board);
 		turn = 1;
 		currentPlayer = Color.WHITE;
-		piecesOnTheBoard = new ArrayList<>();
 		capturedPieces = new ArrayList<>();
 		check = false;
+		repetitions = new RepetitionTable();
 		initialSetup();
+		updateHash();
+		repetitions.add(hash);
+	}
+
+	// independent copy of the current position; the move history is not copied, so it starts with nothing to undo
+	private ChessMatch(ChessMatch source) {
+		board = new ChessBoard();
+		moveGenerator = new MoveGenerator(board);
+		turn = source.turn;
+		currentPlayer = source.currentPlayer;
+		capturedPieces = new ArrayList<>(source.capturedPieces.size());
+		check = source.check;
+		checkMate = source.checkMate;
+		stalemate = source.stalemate;
+		draw = source.draw;
+		halfmoveClock = source.halfmoveClock;
+		long occupied = source.board.getOccupied();
+		while (occupied != 0) {
+			int square = Long.numberOfTrailingZeros(occupied);
+			occupied &= occupied - 1;
+			ChessPiece copy = copyPiece(source.board.pieceAt(square));
+			board.placePiece(copy, position(square));
+		}
+		for (Piece p : source.capturedPieces) {
+			capturedPieces.add(copyPiece((ChessPiece) p));
+		}
+		if (source.enPassantVulnerable != null)
+			enPassantVulnerable = board.pieceAt(source.enPassantVulnerable.getSquare());
+		if (source.promoted != null && source.promoted.isOnBoard())
+			promoted = board.pieceAt(source.promoted.getSquare());
+		updateHash();
+		// the positions that can still repeat, with those the source was loaded with and has no history for
+		repetitions = new RepetitionTable(source.repetitions);
+	}
+
+	// rebuilds a match from a snapshot; move counts other than those behind the castling rights are not kept
+	public ChessMatch(ChessSnapshot snapshot) {
+		board = new ChessBoard();
+		moveGenerator = new MoveGenerator(board);
+		turn = snapshot.getTurn();
+		currentPlayer = snapshot.getCurrentPlayer();
+		capturedPieces = new ArrayList<>();
+		repetitions = new RepetitionTable();
+		check = snapshot.getCheck();
+		checkMate = snapshot.getCheckmate();
+		stalemate = snapshot.getStalemate();
+		draw = snapshot.getDraw();
+		halfmoveClock = snapshot.getHalfmoveClock();
+		for (int square = 0; square < dim * dim; square++) {
+			PieceType type = snapshot.getType(square);
+			if (type != null) {
+				ChessPiece piece = newPiece(type, snapshot.getColor(square));
+				board.placePiece(piece, position(square));
+			}
+		}
+		setCastlingRights(snapshot.getCastlingRights());
+		int enPassant = snapshot.getEnPassantSquare();
+		if (enPassant >= 0)
+			enPassantVulnerable = board.pieceAt(enPassant + (currentPlayer == Color.WHITE ? dim : -dim));
+		updateHash();
+		repetitions.add(hash);
+	}
+
+	// replays the moves of a dormant match from its initial position; the replay finds the draws of every ply, the
+	// mate or stalemate that ended the game comes from the position the match was put away in
+	ChessMatch(DormantMatch dormant) {
+		this(dormant.getInitialPosition());
+		for (int i = 0; i < dormant.getPly(); i++) {
+			makeMove(dormant.getMove(i));
+		}
+		ChessSnapshot position = dormant.getPosition();
+		turn = position.getTurn();
+		currentPlayer = position.getCurrentPlayer();
+		check = position.getCheck();
+		checkMate = position.getCheckmate();
+		stalemate = position.getStalemate();
+		draw = position.getDraw();
+		updateHash();
+		if (hash != position.getPositionKey())
+			throw new IllegalStateException("The moves of the dormant match do not lead to its position");
+	}
+
+	// any legal position; the side that is not to move must not be in check
+	public static ChessMatch fromFen(String fen) {
+		ChessMatch match = new ChessMatch(Fen.parse(fen));
+		Color player = match.currentPlayer;
+		if (match.testCheck(match.opponent(player)))
+			throw new ChessException("Invalid FEN, the side that is not to move is in check: " + fen);
+		boolean hasMove = match.moveGenerator.hasLegalMove(player);
+		match.check = match.testCheck(player);
+		match.checkMate = match.check && !hasMove;
+		match.stalemate = !match.check && !hasMove;
+		if (match.stalemate)
+			match.draw = DrawReason.STALEMATE;
+		else if (!match.checkMate)
+			match.draw = match.drawReason(match.hash);
+		// a game that is over keeps the side that made the last move as the current player, as after endMove
+		if (!hasMove) {
+			match.turn--;
+			match.currentPlayer = match.opponent(player);
+			match.updateHash();
+			match.repetitions.clear();
+			match.repetitions.add(match.hash);
+		}
+		return match;
+	}
+
+	// after mate or stalemate the turn was not passed, the position has the other side to move
+	public String toFen() {
+		if (checkMate || stalemate)
+			return Fen.format(snapshot(opponent(currentPlayer), turn + 1));
+		return Fen.format(snapshot());
+	}
+
+	public ChessMatch copy() {
+		return new ChessMatch(this);
+	}
+
+	public ChessSnapshot snapshot() {
+		return snapshot(currentPlayer, turn);
+	}
+
+	private ChessSnapshot snapshot(Color toMove, int turn) {
+		long[] squares = new long[4];
+		for (Color color : COLORS) {
+			for (PieceType type : TYPES) {
+				ChessSnapshot.pack(squares, board.getPieces(color, type), color, type);
+			}
+		}
+		int enPassant = -1;
+		if (enPassantVulnerable != null)
+			enPassant = enPassantVulnerable.getSquare() + (enPassantVulnerable.getColor() == Color.WHITE ? dim : -dim);
+		return new ChessSnapshot(squares, toMove, castlingRights(), enPassant, check, checkMate, stalemate,
+				draw, halfmoveClock, turn, hash);
+	}
+
+	// the match in the compact form of an idle game, see DormantMatch; a promoted piece must be chosen first
+	public DormantMatch toDormant() {
+		if (promoted != null && promoted.isOnBoard())
+			throw new IllegalStateException("The promoted piece must be chosen before the match is put away");
+		return new DormantMatch(getInitialPosition(), getMoveHistory(), snapshot());
+	}
+
+	// moves made so far, oldest first, packed as described in Move
+	public int[] getMoveHistory() {
+		return Arrays.copyOf(history, ply);
+	}
+
+	// position the move history starts from, so the game can be replayed from new ChessMatch(getInitialPosition())
+	public ChessSnapshot getInitialPosition() {
+		return (ply == 0) ? snapshot() : initialPosition;
 	}
 
 	public ChessPiece getEnPassantVulnerable() {
@@ -62,58 +256,121 @@ public class ChessMatch {
 		return checkMate;
 	}
 
+	public boolean getStalemate() {
+		return stalemate;
+	}
+
+	// the draw the position is in, stalemate included, or null; only a stalemate keeps the turn from passing
+	public DrawReason getDraw() {
+		return draw;
+	}
+
+	public int getHalfmoveClock() {
+		return halfmoveClock;
+	}
+
+	// castling rights as ChessSnapshot flags
+	public int getCastlingRights() {
+		return castlingRights();
+	}
+
+	// 64 bit Zobrist key of the position: pieces, side to move, castling rights and en passant file
+	public long getPositionKey() {
+		return hash;
+	}
+
+	public ChessPiece pieceAt(int square) {
+		return board.pieceAt(square);
+	}
+
+	// bitboard of the given pieces, see ChessBoard
+	public long getPieces(Color color, PieceType type) {
+		return board.getPieces(color, type);
+	}
+
+	// pieces taken so far, in the order they were captured
+	public List<ChessPiece> getCapturedPieces() {
+		List<ChessPiece> captured = new ArrayList<>(capturedPieces.size());
+		for (Piece p : capturedPieces) {
+			captured.add((ChessPiece) p);
+		}
+		return captured;
+	}
+
 	public ChessPiece[][] getPieces() {
-		ChessPiece[][] m = new ChessPiece[board.getRows()][board.getColumns()];
-		for (int i = 0; i < board.getRows(); ++i) {
-			for (int j = 0; j < board.getColumns(); ++j) {
-				m[i][j] = (ChessPiece) board.piece(i, j);
+		ChessPiece[][] m = new ChessPiece[dim][dim];
+		for (int i = 0; i < dim; ++i) {
+			for (int j = 0; j < dim; ++j) {
+				m[i][j] = board.pieceAt(ChessBoard.square(i, j));
 			}
 		}
 		return m;
 	}
 
 	public boolean[][] possibleMoves(ChessPosition sourcePosition) {
-		Position position = sourcePosition.toPosition();
-		validateSourcePosition(position);
-		return board.piece(position).possibleMoves();
+		int source = sourcePosition.getSquare();
+		validateSourcePosition(source);
+		boolean[][] mat = new boolean[dim][dim];
+		int[] moves = new int[MAX_MOVES];
+		int count = moveGenerator.generate(currentPlayer, moves);
+		for (int i = 0; i < count; i++) {
+			if (Move.from(moves[i]) == source) {
+				int target = Move.to(moves[i]);
+				mat[ChessBoard.row(target)][ChessBoard.column(target)] = true;
+			}
+		}
+		return mat;
+	}
+
+	// legal moves of the player to move, packed as described in Move
+	public int[] legalMoves() {
+		int[] moves = new int[MAX_MOVES];
+		return Arrays.copyOf(moves, moveGenerator.generate(currentPlayer, moves));
+	}
+
+	// fills a caller-owned buffer of at least MAX_MOVES entries and returns the number of moves
+	public int legalMoves(int[] moves) {
+		return moveGenerator.generate(currentPlayer, moves);
 	}
 
 	public ChessPiece performChessMove(ChessPosition sourcePosition, ChessPosition targetPosition) {
-		Position src = sourcePosition.toPosition();
-		Position tgt = targetPosition.toPosition();
-		validateSourcePosition(src);
-		validateTargetPosition(src, tgt);
-		Piece capturedPiece = makeMove(src, tgt);
-
-		if (testCheck(currentPlayer)) {
-			undoMove(src, tgt, capturedPiece);
+		return performChessMove(Move.of(sourcePosition.getSquare(), targetPosition.getSquare()));
+	}
+
+	// a move packed as described in Move; a promotion without a piece promotes to a queen, which
+	// replacePromotedPiece can still change, one that names its piece is complete
+	public ChessPiece performChessMove(int move) {
+		int from = Move.from(move);
+		int to = Move.to(move);
+		// the promotion field (see Move) can only name a knight, bishop, rook or queen
+		if (((move >>> 12) & 7) > PieceType.QUEEN.ordinal())
+			throw new ChessException("Invalid promotion piece in move " + ChessPosition.of(from) + ChessPosition.of(to));
+		validateSourcePosition(from);
+		validateTargetPosition(from, to);
+		if (!moveGenerator.isLegal(currentPlayer, from, to)) {
 			throw new ChessException("You cannot put yourself in check");
 		}
-		ChessPiece movedPiece = (ChessPiece) board.piece(tgt);
+		ChessPiece movedPiece = board.pieceAt(from);
 
 		// #specialmove promotion
-		promoted = null;
+		boolean promotion = false;
+		boolean chosen = false;
 		if (movedPiece instanceof Pawn) {
-			if ((movedPiece.getColor() == Color.WHITE && tgt.getRow() == 0)
-					|| (movedPiece.getColor() == Color.BLACK && tgt.getRow() == 7)) {
-				promoted = (ChessPiece) board.piece(tgt);
-				promoted = replacePromotedPiece("Q");
+			if ((movedPiece.getColor() == Color.WHITE && ChessBoard.row(to) == 0)
+					|| (movedPiece.getColor() == Color.BLACK && ChessBoard.row(to) == 7)) {
+				PieceType type = Move.promotion(move);
+				chosen = type != null;
+				move = Move.of(from, to, chosen ? type : PieceType.QUEEN);
+				promotion = true;
 			}
 		}
+		if (!promotion)
+			move = Move.of(from, to);
+		Piece capturedPiece = applyMove(move);
+		promoted = (promotion && !chosen) ? board.pieceAt(to) : null;
 
-		check = (testCheck(opponent(currentPlayer))) ? true : false;
+		endMove();
 
-		if (testCheckMate(opponent(currentPlayer)))
-			checkMate = true;
-		else
-			nextTurn();
-
-		// #specialmove en passant
-		if (movedPiece instanceof Pawn && (tgt.getRow() == src.getRow() - 2 || tgt.getRow() == src.getRow() + 2)) {
-			enPassantVulnerable = movedPiece;
-		} else {
-			enPassantVulnerable = null;
-		}
 		return (ChessPiece) capturedPiece;
 	}
 
@@ -125,25 +382,237 @@ public class ChessMatch {
 			return promoted;
 		}
 
-		Position pos = promoted.getChessPosition().toPosition();
-		Piece p = board.removePiece(pos);
-		piecesOnTheBoard.remove(p);
+		Position pos = position(promoted.getSquare());
+		board.removePiece(pos);
 
 		ChessPiece newPiece = newPiece(type, promoted.getColor());
 		board.placePiece(newPiece, pos);
-		piecesOnTheBoard.add(newPiece);
+
+		// keep the recorded move in line with the piece actually chosen
+		if (ply > 0 && Move.to(history[ply - 1]) == ChessBoard.square(pos)) {
+			int move = history[ply - 1];
+			history[ply - 1] = Move.of(Move.from(move), Move.to(move), newPiece.getType());
+		}
+
+		// performChessMove looked for mate with a queen on the square, look again with the piece chosen
+		Color mover = newPiece.getColor();
+		if (!checkMate && !stalemate) {
+			turn--;
+			currentPlayer = mover;
+		}
+		checkMate = false;
+		stalemate = false;
+		draw = null;
+		updateHash();
+		// a promotion is a pawn move, the position after it is the only one that counts for repetitions
+		repetitions.clear();
+		repetitions.add(hash ^ Zobrist.sideToMove());
+		endMove();
+		updateHash();
 
 		return newPiece;
 	}
 
 	private ChessPiece newPiece(String type, Color color) {
 		if (type.equals("B"))
-			return new Bishop(board, color);
+			return newPiece(PieceType.BISHOP, color);
 		if (type.equals("N"))
-			return new Knight(board, color);
+			return newPiece(PieceType.KNIGHT, color);
 		if (type.equals("Q"))
+			return newPiece(PieceType.QUEEN, color);
+		return newPiece(PieceType.ROOK, color);
+	}
+
+	private ChessPiece newPiece(PieceType type, Color color) {
+		switch (type) {
+		case PAWN:
+			return new Pawn(board, color, this);
+		case KING:
+			return new King(board, color, this);
+		case BISHOP:
+			return new Bishop(board, color);
+		case KNIGHT:
+			return new Knight(board, color);
+		case QUEEN:
 			return new Queen(board, color);
-		return new Rook(board, color);
+		default:
+			return new Rook(board, color);
+		}
+	}
+
+	// makes one of the moves returned by legalMoves() and passes the turn; the move is not validated and mate and
+	// stalemate are not looked for, the other draws are
+	public void makeMove(int move) {
+		applyMove(move);
+		check = testCheck(opponent(currentPlayer));
+		nextTurn();
+		draw = drawReason(hash);
+	}
+
+	// takes back the last move made by makeMove, performChessMove or redoMove; it can then be made again by redoMove
+	public void undoMove() {
+		if (ply == 0)
+			throw new IllegalStateException("There is no move to undo");
+		int move = history[--ply];
+		long state = states[ply];
+		int from = Move.from(move);
+		int to = Move.to(move);
+
+		// the position after the move, with the opponent to move even when the move ended the game
+		repetitions.remove(currentPlayer == board.pieceAt(to).getColor() ? hash ^ Zobrist.sideToMove() : hash);
+		boolean irreversible = halfmoveClock == 0;
+		boolean ended = checkMate || stalemate;
+
+		ChessPiece p = (ChessPiece) board.removePiece(position(to));
+		// #specialmove promotion
+		if (Move.promotion(move) != null) {
+			p = newPiece(PieceType.PAWN, p.getColor());
+		} else {
+			p.decreaseMoveCount();
+		}
+		board.placePiece(p, position(from));
+
+		// the captured piece is the last one of capturedPieces
+		int capturedSquare = square(state, CAPTURED_SHIFT);
+		if (capturedSquare != NO_SQUARE) {
+			Piece captured = capturedPieces.remove(capturedPieces.size() - 1);
+			board.placePiece(captured, position(capturedSquare));
+		}
+
+		// #specialmove castling
+		if (p instanceof King && Math.abs(to - from) == 2) {
+			int rookSource = (to > from) ? from + 3 : from - 4;
+			int rookTarget = (to > from) ? from + 1 : from - 1;
+			ChessPiece rook = (ChessPiece) board.removePiece(position(rookTarget));
+			board.placePiece(rook, position(rookSource));
+			rook.decreaseMoveCount();
+		}
+
+		int enPassant = square(state, 0);
+		enPassantVulnerable = (enPassant == NO_SQUARE) ? null : board.pieceAt(enPassant);
+		int promotedSquare = square(state, PROMOTED_SHIFT);
+		promoted = (promotedSquare == NO_SQUARE) ? null : board.pieceAt(promotedSquare);
+		int flags = (int) (state >>> FLAGS_SHIFT);
+		check = (flags & CHECK) != 0;
+		checkMate = (flags & CHECKMATE) != 0;
+		stalemate = (flags & STALEMATE) != 0;
+		int drawCode = (flags >>> DRAW_SHIFT) & 7;
+		draw = (drawCode == 0) ? null : DRAW_REASONS[drawCode - 1];
+		currentPlayer = ((flags & WHITE_TO_MOVE) != 0) ? Color.WHITE : Color.BLACK;
+		halfmoveClock = (int) (state >>> CLOCK_SHIFT);
+		if (!ended)
+			turn--;
+		hash = keys[ply];
+		// the move cleared the table, refill it with the positions of the window that was before
+		if (irreversible) {
+			repetitions.clear();
+			for (int i = Math.max(0, ply - halfmoveClock); i <= ply; i++) {
+				repetitions.add(keys[i]);
+			}
+		}
+	}
+
+	// makes the last move taken back again, ending the game when it does as performChessMove would
+	public void redoMove() {
+		if (!canRedo())
+			throw new IllegalStateException("There is no move to redo");
+		applyMove(history[ply]);
+		promoted = null;
+		endMove();
+	}
+
+	public boolean canUndo() {
+		return ply > 0;
+	}
+
+	public boolean canRedo() {
+		return ply < redoLimit;
+	}
+
+	// number of moves made since the initial position
+	public int getPly() {
+		return ply;
+	}
+
+	// undoes or redoes moves until the given number of moves is made
+	public void goToPly(int target) {
+		if (target < 0 || target > redoLimit)
+			throw new IllegalArgumentException("Ply " + target + " is outside the move history 0-" + redoLimit);
+		while (ply > target) {
+			undoMove();
+		}
+		while (ply < target) {
+			redoMove();
+		}
+	}
+
+	private Piece applyMove(int move) {
+		if (ply == 0 && initialPosition == null)
+			initialPosition = snapshot();
+		if (ply == history.length) {
+			int length = Math.max(16, ply * 2);
+			history = Arrays.copyOf(history, length);
+			states = Arrays.copyOf(states, length);
+			keys = Arrays.copyOf(keys, length);
+		}
+		// any move but the next one to redo drops the moves that could be redone
+		if (ply >= redoLimit || history[ply] != move)
+			redoLimit = ply + 1;
+		history[ply] = move;
+		keys[ply] = hash;
+		long state = state();
+
+		int from = Move.from(move);
+		int to = Move.to(move);
+		ChessPiece movedPiece = board.pieceAt(from);
+		boolean enPassant = movedPiece instanceof Pawn && ChessBoard.column(from) != ChessBoard.column(to)
+				&& board.pieceAt(to) == null;
+		Piece capturedPiece = makeMove(position(from), position(to));
+		boolean irreversible = capturedPiece != null || movedPiece instanceof Pawn;
+		int capturedSquare = enPassant ? ChessBoard.square(ChessBoard.row(from), ChessBoard.column(to)) : to;
+		states[ply++] = state | (long) (capturedPiece == null ? NO_SQUARE : capturedSquare) << CAPTURED_SHIFT;
+
+		// #specialmove promotion
+		PieceType promotion = Move.promotion(move);
+		if (promotion != null) {
+			Position pos = position(to);
+			board.removePiece(pos);
+			ChessPiece newPiece = newPiece(promotion, movedPiece.getColor());
+			board.placePiece(newPiece, pos);
+		}
+
+		// #specialmove en passant
+		if (movedPiece instanceof Pawn && Math.abs(to - from) == 2 * dim) {
+			enPassantVulnerable = movedPiece;
+		} else {
+			enPassantVulnerable = null;
+		}
+		updateHash();
+
+		// earlier positions cannot come back after a capture or a pawn move
+		if (irreversible) {
+			halfmoveClock = 0;
+			repetitions.clear();
+		} else {
+			halfmoveClock++;
+		}
+		repetitions.add(hash ^ Zobrist.sideToMove());
+		return capturedPiece;
+	}
+
+	// undo record of the current state, without the captured piece
+	private long state() {
+		int flags = (check ? CHECK : 0) | (checkMate ? CHECKMATE : 0) | (stalemate ? STALEMATE : 0)
+				| (currentPlayer == Color.WHITE ? WHITE_TO_MOVE : 0)
+				| ((draw == null ? 0 : draw.ordinal() + 1) << DRAW_SHIFT);
+		int enPassant = (enPassantVulnerable == null) ? NO_SQUARE : enPassantVulnerable.getSquare();
+		int promotedSquare = (promoted == null || !promoted.isOnBoard()) ? NO_SQUARE : promoted.getSquare();
+		return enPassant | (long) promotedSquare << PROMOTED_SHIFT | (long) flags << FLAGS_SHIFT
+				| (long) halfmoveClock << CLOCK_SHIFT;
+	}
+
+	private static int square(long state, int shift) {
+		return (int) (state >>> shift) & NO_SQUARE;
 	}
 
 	private Piece makeMove(Position src, Position tgt) {
@@ -152,22 +621,21 @@ public class ChessMatch {
 		Piece capturedPiece = board.removePiece(tgt);
 		board.placePiece(p, tgt);
 		if (capturedPiece != null) {
-			piecesOnTheBoard.remove(capturedPiece);
 			capturedPieces.add(capturedPiece);
 		}
 		// #specialmove castling kingside rook
 		if (p instanceof King && tgt.getColumn() == src.getColumn() + 2) {
-			Position sourceT = new Position(src.getRow(), src.getColumn() + 3);
-			Position targetT = new Position(src.getRow(), src.getColumn() + 1);
+			Position sourceT = Position.of(src.getRow(), src.getColumn() + 3);
+			Position targetT = Position.of(src.getRow(), src.getColumn() + 1);
 			ChessPiece rook = (ChessPiece) board.removePiece(sourceT);
 			board.placePiece(rook, targetT);
 			rook.increaseMoveCount();
 		}
 
 		// #specialmove castling queenside rook
-		if (p instanceof King && tgt.getColumn() == tgt.getColumn() - 2) {
-			Position sourceT = new Position(src.getRow(), src.getColumn() - 4);
-			Position targetT = new Position(src.getRow(), src.getColumn() - 1);
+		if (p instanceof King && tgt.getColumn() == src.getColumn() - 2) {
+			Position sourceT = Position.of(src.getRow(), src.getColumn() - 4);
+			Position targetT = Position.of(src.getRow(), src.getColumn() - 1);
 			ChessPiece rook = (ChessPiece) board.removePiece(sourceT);
 			board.placePiece(rook, targetT);
 			rook.increaseMoveCount();
@@ -177,148 +645,182 @@ public class ChessMatch {
 			if (src.getColumn() != tgt.getColumn() && capturedPiece == null) {
 				Position pawnPosition;
 				if (p.getColor() == Color.WHITE) {
-					pawnPosition = new Position(tgt.getRow() + 1, tgt.getColumn());
+					pawnPosition = Position.of(tgt.getRow() + 1, tgt.getColumn());
 				} else {
-					pawnPosition = new Position(tgt.getRow() - 1, tgt.getColumn());
+					pawnPosition = Position.of(tgt.getRow() - 1, tgt.getColumn());
 				}
 				capturedPiece = board.removePiece(pawnPosition);
 				capturedPieces.add(capturedPiece);
-				piecesOnTheBoard.remove(capturedPiece);
 			}
 		}
 		return (ChessPiece) capturedPiece;
 	}
 
-	private void undoMove(Position src, Position tgt, Piece capturedPiece) {
-		ChessPiece p = (ChessPiece) board.removePiece(tgt);
-		p.decreaseMoveCount();
-		board.placePiece(p, src);
-
-		if (capturedPiece != null) {
-			board.placePiece(capturedPiece, tgt);
-			capturedPieces.remove(capturedPiece);
-		}
-		// #specialmove castling kingside rook
-		if (p instanceof King && tgt.getColumn() == src.getColumn() + 2) {
-			Position sourceT = new Position(src.getRow(), src.getColumn() + 3);
-			Position targetT = new Position(src.getRow(), src.getColumn() + 1);
-			ChessPiece rook = (ChessPiece) board.removePiece(sourceT);
-			board.placePiece(rook, sourceT);
-			rook.decreaseMoveCount();
-		}
+	private void validateSourcePosition(int square) {
+		ChessPiece piece = board.pieceAt(square);
+		if (piece == null)
+			throw new ChessException("There is no piece on source position");
+		if (currentPlayer != piece.getColor())
+			throw new ChessException("The chosen piece is not yours");
+		if (!piece.hasAnyMove())
+			throw new ChessException("There is no possible moves for the chosen piece");
+	}
 
-		// #specialmove castling queenside rook
-		if (p instanceof King && tgt.getColumn() == tgt.getColumn() - 2) {
-			Position sourceT = new Position(src.getRow(), src.getColumn() - 4);
-			Position targetT = new Position(src.getRow(), src.getColumn() - 1);
-			ChessPiece rook = (ChessPiece) board.removePiece(sourceT);
-			board.placePiece(rook, sourceT);
-			rook.decreaseMoveCount();
+	private void validateTargetPosition(int source, int target) {
+		if (!board.pieceAt(source).canMoveTo(target)) {
+			throw new ChessException("The chosen piece can't move to target destination");
 		}
+	}
 
-		// #specialmove en passant
-		if (p instanceof Pawn) {
-			if (src.getColumn() != tgt.getColumn() && capturedPiece == enPassantVulnerable) {
-				ChessPiece pawn = (ChessPiece) board.removePiece(tgt);
-				Position pawnPosition;
-				if (p.getColor() == Color.WHITE) {
-					pawnPosition = new Position(3, tgt.getColumn());
-				} else {
-					pawnPosition = new Position(4, tgt.getColumn());
-				}
-				board.placePiece(pawn, pawnPosition);
-			}
+	// after a move of the current player: sets check, then ends the game by mate or stalemate or passes the turn;
+	// the other draws are only reported, play may go on as after a draw that is not claimed
+	private void endMove() {
+		Color opponent = opponent(currentPlayer);
+		check = testCheck(opponent);
+		boolean hasMove = moveGenerator.hasLegalMove(opponent);
+		if (check && !hasMove) {
+			checkMate = true;
+		} else if (!hasMove) {
+			stalemate = true;
+			draw = DrawReason.STALEMATE;
+		} else {
+			nextTurn();
+			draw = drawReason(hash);
 		}
 	}
 
-	private void validateSourcePosition(Position position) {
-		if (!board.containsPiece(position))
-			throw new ChessException("There is no piece on source position");
-		if (currentPlayer != ((ChessPiece) board.piece(position)).getColor())
-			throw new ChessException("The chosen piece is not yours");
-		if (!board.piece(position).isThereAnyPossibleMove())
-			throw new ChessException("There is no possible moves for the chosen piece");
+	// the draw, other than stalemate, of the position with the given key, or null; all checks are constant time
+	private DrawReason drawReason(long key) {
+		if (repetitions.count(key) >= 3)
+			return DrawReason.REPETITION;
+		if (halfmoveClock >= FIFTY_MOVES)
+			return DrawReason.FIFTY_MOVES;
+		if (insufficientMaterial())
+			return DrawReason.INSUFFICIENT_MATERIAL;
+		return null;
 	}
 
-	private void validateTargetPosition(Position source, Position target) {
-		if (!board.piece(source).possibleMove(target)) {
-			throw new ChessException("The chosen piece can't move to target destination");
+	// no sequence of moves can mate: kings alone, a single minor piece, or only bishops and all on one square color
+	private boolean insufficientMaterial() {
+		long heavy = 0L;
+		long knights = 0L;
+		long bishops = 0L;
+		for (Color color : COLORS) {
+			heavy |= board.getPieces(color, PieceType.PAWN) | board.getPieces(color, PieceType.ROOK)
+					| board.getPieces(color, PieceType.QUEEN);
+			knights |= board.getPieces(color, PieceType.KNIGHT);
+			bishops |= board.getPieces(color, PieceType.BISHOP);
 		}
+		if (heavy != 0)
+			return false;
+		long minors = knights | bishops;
+		if ((minors & (minors - 1)) == 0)
+			return true;
+		return knights == 0 && ((bishops & LIGHT_SQUARES) == 0 || (bishops & ~LIGHT_SQUARES) == 0);
 	}
 
 	private void nextTurn() {
 		turn++;
 		currentPlayer = (currentPlayer == Color.WHITE) ? Color.BLACK : Color.WHITE;
+		updateHash();
 	}
 
-	private Color opponent(Color color) {
-		return (color == Color.WHITE) ? Color.BLACK : Color.WHITE;
+	// the piece part of the key is maintained by the board, the rest is a few table lookups
+	private void updateHash() {
+		hash = board.getKey() ^ Zobrist.state(currentPlayer, castlingRights(), enPassantFile());
 	}
 
-	private ChessPiece king(Color color) {
-		List<Piece> list = piecesOnTheBoard.stream().filter(x -> ((ChessPiece) x).getColor() == color)
-				.collect(Collectors.toList());
-		for (var x : list) {
-			if (x instanceof King) {
-				return (ChessPiece) x;
-			}
-		}
-		throw new IllegalStateException("There is no " + color + " king on the board");
+	// castling rights as ChessSnapshot flags, derived from the move counts of kings and rooks
+	int castlingRights() {
+		int rights = 0;
+		if (castlingRight(Color.WHITE, 60, 63))
+			rights |= ChessSnapshot.WHITE_KINGSIDE;
+		if (castlingRight(Color.WHITE, 60, 56))
+			rights |= ChessSnapshot.WHITE_QUEENSIDE;
+		if (castlingRight(Color.BLACK, 4, 7))
+			rights |= ChessSnapshot.BLACK_KINGSIDE;
+		if (castlingRight(Color.BLACK, 4, 0))
+			rights |= ChessSnapshot.BLACK_QUEENSIDE;
+		return rights;
 	}
 
-	private boolean testCheck(Color color) {
-		Position kingPosition = king(color).getChessPosition().toPosition();
-		List<Piece> opponentPieces = piecesOnTheBoard.stream()
-				.filter(x -> ((ChessPiece) x).getColor() == opponent(color)).collect(Collectors.toList());
-		for (Piece p : opponentPieces) {
-			boolean[][] mat = p.possibleMoves();
-			if (mat[kingPosition.getRow()][kingPosition.getColumn()]) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	/*
-	 * this method could have been written in a more efficient way. instead of using
-	 * a whole boolean matrix to represent the positions each piece can move to, we
-	 * could have achieved the same result by simply storing each coordinate on a
-	 * unordered_set (i think in java it's called a hashSet), that way we could
-	 * avoid the O(n^4) time complexity of this method)
-	 * 
-	 * if this was an actual software and not just a practice project, i would
-	 * definitely try a different approach instead of just copying a whole boolean
-	 * matrix for each piece.
-	 * 
-	 */
-	private boolean testCheckMate(Color color) {
-		if (!testCheck(color))
-			return false;
-		List<Piece> list = piecesOnTheBoard.stream().filter(x -> ((ChessPiece) x).getColor() == color)
-				.collect(Collectors.toList());
-		for (Piece p : list) {
-			boolean[][] mat = p.possibleMoves();
-			for (int i = 0; i < board.getRows(); i++) {
-				for (int j = 0; j < board.getColumns(); j++) {
-					if (mat[i][j]) {
-						Position source = ((ChessPiece) p).getChessPosition().toPosition();
-						Position target = new Position(i, j);
-						Piece capturedPiece = makeMove(source, target);
-						boolean testCheck = testCheck(color);
-						undoMove(source, target, capturedPiece);
-						if (!testCheck) {
-							return false;
-						}
-					}
-				}
+	// sets the move counts of kings and rooks so that castlingRights() returns rights; the ones away from their
+	// initial squares count as moved, King only looks at the move counts when castling
+	private void setCastlingRights(int rights) {
+		for (Color color : COLORS) {
+			long pieces = board.getPieces(color, PieceType.KING) | board.getPieces(color, PieceType.ROOK);
+			while (pieces != 0) {
+				setMoved(Long.numberOfTrailingZeros(pieces), true);
+				pieces &= pieces - 1;
 			}
 		}
-		return true;
+		setMoved(60, (rights & (ChessSnapshot.WHITE_KINGSIDE | ChessSnapshot.WHITE_QUEENSIDE)) == 0);
+		setMoved(63, (rights & ChessSnapshot.WHITE_KINGSIDE) == 0);
+		setMoved(56, (rights & ChessSnapshot.WHITE_QUEENSIDE) == 0);
+		setMoved(4, (rights & (ChessSnapshot.BLACK_KINGSIDE | ChessSnapshot.BLACK_QUEENSIDE)) == 0);
+		setMoved(7, (rights & ChessSnapshot.BLACK_KINGSIDE) == 0);
+		setMoved(0, (rights & ChessSnapshot.BLACK_QUEENSIDE) == 0);
+	}
+
+	private void setMoved(int square, boolean moved) {
+		ChessPiece p = board.pieceAt(square);
+		if (p != null)
+			p.setMoveCount(moved ? 1 : 0);
+	}
+
+	private boolean castlingRight(Color color, int kingSquare, int rookSquare) {
+		ChessPiece king = board.pieceAt(kingSquare);
+		ChessPiece rook = board.pieceAt(rookSquare);
+		return king instanceof King && king.getColor() == color && king.getMoveCount() == 0
+				&& rook instanceof Rook && rook.getColor() == color && rook.getMoveCount() == 0;
+	}
+
+	// file of the pawn that can be taken en passant, only if an opponent pawn is there to take it
+	private int enPassantFile() {
+		if (enPassantVulnerable == null)
+			return -1;
+		int square = enPassantVulnerable.getSquare();
+		int column = ChessBoard.column(square);
+		long pawns = board.getPieces(opponent(enPassantVulnerable.getColor()), PieceType.PAWN);
+		long neighbours = 0L;
+		if (column > 0)
+			neighbours |= 1L << (square - 1);
+		if (column < dim - 1)
+			neighbours |= 1L << (square + 1);
+		return (pawns & neighbours) != 0 ? column : -1;
+	}
+
+	private ChessPiece copyPiece(ChessPiece p) {
+		ChessPiece copy = newPiece(p.getType(), p.getColor());
+		copy.setMoveCount(p.getMoveCount());
+		return copy;
+	}
+
+	private static Position position(int square) {
+		return Position.of(ChessBoard.row(square), ChessBoard.column(square));
+	}
+
+	private Color opponent(Color color) {
+		return (color == Color.WHITE) ? Color.BLACK : Color.WHITE;
+	}
+
+	private int king(Color color) {
+		int square = board.getKingSquare(color);
+		if (square < 0)
+			throw new IllegalStateException("There is no " + color + " king on the board");
+		return square;
+	}
+
+	boolean testCheck(Color color) {
+		return board.isAttacked(king(color), opponent(color));
+	}
+
+	boolean testCheckMate(Color color) {
+		return testCheck(color) && !moveGenerator.hasLegalMove(color);
 	}
 
 	private void placeNewPiece(char column, int row, ChessPiece piece) {
-		board.placePiece(piece, new ChessPosition(column, row).toPosition());
-		piecesOnTheBoard.add(piece);
+		board.placePiece(piece, ChessPosition.of(column, row).toPosition());
 	}
 
 	private void initialSetup() {
@@ -359,4 +861,4 @@ public class ChessMatch {
 		placeNewPiece('g', 7, new Pawn(board, Color.BLACK, this));
 		placeNewPiece('h', 7, new Pawn(board, Color.BLACK, this));
 	}
-}
\ No newline at end of file
+}
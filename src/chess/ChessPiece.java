@@ -1,5 +1,4 @@
 package chess;
-import boardgame.Board;
 import boardgame.Piece;
 import boardgame.Position;
 
@@ -7,14 +6,22 @@ public abstract class ChessPiece extends Piece{
 	private Color color;
 	private int moveCount;
 
-	public ChessPiece(Board board, Color color) {
+	public ChessPiece(ChessBoard board, Color color) {
 		super(board);
 		this.color = color;
 	}
 
+	@Override
+	protected ChessBoard getBoard() {
+		return (ChessBoard) super.getBoard();
+	}
+
 	public Color getColor() {
 		return color;
 	}
+
+	public abstract PieceType getType();
+
 	public int getMoveCount() {
 		return moveCount;
 	}
@@ -24,13 +31,73 @@ public abstract class ChessPiece extends Piece{
 	public void decreaseMoveCount() {
 		moveCount--;
 	}
+	void setMoveCount(int moveCount) {
+		this.moveCount = moveCount;
+	}
 	
 	public ChessPosition getChessPosition() {
-		return ChessPosition.fromPosition(position);
+		return ChessPosition.of(getSquare());
+	}
+
+	public int getSquare() {
+		return ChessBoard.square(position);
+	}
+
+	boolean isOnBoard() {
+		return position != null;
+	}
+
+	// pseudo-legal target squares of this piece as a bitboard (see ChessBoard)
+	public abstract long targets();
+
+	public boolean canMoveTo(int square) {
+		return (targets() & (1L << square)) != 0;
+	}
+
+	public boolean hasAnyMove() {
+		return targets() != 0;
+	}
+
+	// appends this piece's moves (see Move) to the buffer and returns the new count
+	public int generateMoves(int[] moves, int count) {
+		int from = getSquare();
+		long targets = targets();
+		while (targets != 0) {
+			moves[count++] = Move.of(from, Long.numberOfTrailingZeros(targets));
+			targets &= targets - 1;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean[][] possibleMoves() {
+		boolean[][] mat = new boolean[ChessBoard.SIZE][ChessBoard.SIZE];
+		long targets = targets();
+		while (targets != 0) {
+			int square = Long.numberOfTrailingZeros(targets);
+			mat[ChessBoard.row(square)][ChessBoard.column(square)] = true;
+			targets &= targets - 1;
+		}
+		return mat;
+	}
+
+	@Override
+	public boolean possibleMove(Position position) {
+		return canMoveTo(ChessBoard.square(position));
+	}
+
+	@Override
+	public boolean isThereAnyPossibleMove() {
+		return hasAnyMove();
 	}
 	
 	protected boolean containsOpponentPiece(Position position) {
 		ChessPiece p = (ChessPiece) getBoard().piece(position);
 		return p != null && p.getColor() != color;
 	}
+
+	// squares that are empty or hold an opponent piece
+	protected long notOwn() {
+		return ~getBoard().getPieces(color);
+	}
 }
@@ -2,10 +2,19 @@ package chess;
 
 import boardgame.Position;
 
+// one shared instance per square: of() and the conversions from and to squares and positions never allocate
 public class ChessPosition {
-	private int row;
-	private char column;
-	
+	private static final ChessPosition[] SQUARES = new ChessPosition[ChessBoard.SIZE * ChessBoard.SIZE];
+
+	static {
+		for (int square = 0; square < SQUARES.length; square++) {
+			SQUARES[square] = new ChessPosition((char) ('a' + ChessBoard.column(square)), 8 - ChessBoard.row(square));
+		}
+	}
+
+	private final int row;
+	private final char column;
+
 	public ChessPosition(char column, int row) {
 		if(column < 'a' || column > 'h' || row < 1 || row > 8)
 			throw new ChessException("Error instatiating ChessPosition. Valid values are from a1 to h8");
@@ -13,6 +22,17 @@ public class ChessPosition {
 		this.row = row;
 	}
 
+	public static ChessPosition of(char column, int row) {
+		if(column < 'a' || column > 'h' || row < 1 || row > 8)
+			throw new ChessException("Error instatiating ChessPosition. Valid values are from a1 to h8");
+		return SQUARES[ChessBoard.square(8 - row, column - 'a')];
+	}
+
+	// the position of a square, see ChessBoard.square
+	public static ChessPosition of(int square) {
+		return SQUARES[square];
+	}
+
 	public char getColumn() {
 		return column;
 	}
@@ -21,16 +41,33 @@ public class ChessPosition {
 		return row;
 	}
 
+	public int getSquare() {
+		return ChessBoard.square(8 - row, column - 'a');
+	}
 
 	public Position toPosition() {
-		Position p = new Position((8 - row), column - 'a');
-		return p;
+		return Position.of(8 - row, column - 'a');
 	}
-	
+
 	protected static ChessPosition fromPosition(Position position) {
-		return new ChessPosition((char)('a' + position.getColumn()), 8 - position.getRow());
+		return SQUARES[ChessBoard.square(position)];
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ChessPosition))
+			return false;
+		ChessPosition other = (ChessPosition) obj;
+		return row == other.row && column == other.column;
 	}
-	
+
+	@Override
+	public int hashCode() {
+		return getSquare();
+	}
+
 	@Override
 	public String toString() {
 		return "" + column + row;
@@ -0,0 +1,191 @@
+package chess;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Immutable, compact copy of a position: four bits per square packed into
+ * four longs, plus the side to move, castling rights, en passant square,
+ * how the game ended if it did, halfmove clock, turn and position key.
+ * Taking a snapshot only scans the bitboards and creates no pieces, so it
+ * is cheap to keep one per stored position.
+ * new ChessMatch(snapshot) turns it back into a playable match.
+ */
+public final class ChessSnapshot {
+	public static final int WHITE_KINGSIDE = 1;
+	public static final int WHITE_QUEENSIDE = 2;
+	public static final int BLACK_KINGSIDE = 4;
+	public static final int BLACK_QUEENSIDE = 8;
+	// bytes taken by write(ByteBuffer)
+	public static final int BYTES = 4 * Long.BYTES + 2 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+	private static final PieceType[] TYPES = PieceType.values();
+	private static final DrawReason[] DRAW_REASONS = DrawReason.values();
+	private static final int BLACK_PIECE = 8;
+	private static final int BLACK_TO_MOVE = 1;
+	private static final int CHECK = 1 << 5;
+	private static final int CHECKMATE = 1 << 6;
+	private static final int STALEMATE = 1 << 7;
+	private static final int NO_EN_PASSANT = 64;
+	private static final int DRAW_SHIFT = 15;
+
+	// squares 0-15, 16-31, 32-47 and 48-63, four bits each: 0 for empty, else type ordinal + 1, plus 8 for black
+	private final long squares0;
+	private final long squares1;
+	private final long squares2;
+	private final long squares3;
+	// bit 0 black to move, bits 1-4 castling rights, bits 5-7 check/checkmate/stalemate, bits 8-14 en passant,
+	// bits 15-17 DrawReason ordinal + 1 or 0
+	private final int flags;
+	private final int turn;
+	private final long positionKey;
+	private final int halfmoveClock;
+
+	ChessSnapshot(long[] squares, Color toMove, int castlingRights, int enPassantSquare, boolean check,
+			boolean checkMate, boolean stalemate, DrawReason draw, int halfmoveClock, int turn, long positionKey) {
+		this.squares0 = squares[0];
+		this.squares1 = squares[1];
+		this.squares2 = squares[2];
+		this.squares3 = squares[3];
+		this.flags = (toMove == Color.BLACK ? BLACK_TO_MOVE : 0) | (castlingRights << 1) | (check ? CHECK : 0)
+				| (checkMate ? CHECKMATE : 0) | (stalemate ? STALEMATE : 0)
+				| ((enPassantSquare < 0 ? NO_EN_PASSANT : enPassantSquare) << 8)
+				| ((draw == null ? 0 : draw.ordinal() + 1) << DRAW_SHIFT);
+		this.turn = turn;
+		this.positionKey = positionKey;
+		this.halfmoveClock = halfmoveClock;
+	}
+
+	private ChessSnapshot(long squares0, long squares1, long squares2, long squares3, int flags, int turn,
+			long positionKey, int halfmoveClock) {
+		this.squares0 = squares0;
+		this.squares1 = squares1;
+		this.squares2 = squares2;
+		this.squares3 = squares3;
+		this.flags = flags;
+		this.turn = turn;
+		this.positionKey = positionKey;
+		this.halfmoveClock = halfmoveClock;
+	}
+
+	// reads BYTES bytes written by write(ByteBuffer), starting at index; the buffer position is not changed
+	public static ChessSnapshot read(ByteBuffer buffer, int index) {
+		return new ChessSnapshot(buffer.getLong(index), buffer.getLong(index + 8), buffer.getLong(index + 16),
+				buffer.getLong(index + 24), buffer.getInt(index + 32), buffer.getInt(index + 36),
+				buffer.getLong(index + 40), buffer.getInt(index + 48));
+	}
+
+	public void write(ByteBuffer buffer) {
+		buffer.putLong(squares0).putLong(squares1).putLong(squares2).putLong(squares3);
+		buffer.putInt(flags).putInt(turn).putLong(positionKey).putInt(halfmoveClock);
+	}
+
+	// adds the pieces of one bitboard to the packed squares
+	static void pack(long[] squares, long bitboard, Color color, PieceType type) {
+		long code = type.ordinal() + 1 + (color == Color.BLACK ? BLACK_PIECE : 0);
+		while (bitboard != 0) {
+			int square = Long.numberOfTrailingZeros(bitboard);
+			squares[square >>> 4] |= code << ((square & 15) << 2);
+			bitboard &= bitboard - 1;
+		}
+	}
+
+	private int code(int square) {
+		long packed;
+		switch (square >>> 4) {
+		case 0:
+			packed = squares0;
+			break;
+		case 1:
+			packed = squares1;
+			break;
+		case 2:
+			packed = squares2;
+			break;
+		default:
+			packed = squares3;
+		}
+		return (int) (packed >>> ((square & 15) << 2)) & 15;
+	}
+
+	// type of the piece on the square (see ChessBoard.square), or null if it is empty
+	public PieceType getType(int square) {
+		int code = code(square);
+		return code == 0 ? null : TYPES[(code & 7) - 1];
+	}
+
+	public Color getColor(int square) {
+		int code = code(square);
+		return code == 0 ? null : (code & BLACK_PIECE) != 0 ? Color.BLACK : Color.WHITE;
+	}
+
+	public Color getCurrentPlayer() {
+		return (flags & BLACK_TO_MOVE) != 0 ? Color.BLACK : Color.WHITE;
+	}
+
+	// combination of WHITE_KINGSIDE, WHITE_QUEENSIDE, BLACK_KINGSIDE and BLACK_QUEENSIDE
+	public int getCastlingRights() {
+		return (flags >>> 1) & 15;
+	}
+
+	// square a pawn can be captured on en passant (the square it skipped), or -1
+	public int getEnPassantSquare() {
+		int square = (flags >>> 8) & 127;
+		return square == NO_EN_PASSANT ? -1 : square;
+	}
+
+	public boolean getCheck() {
+		return (flags & CHECK) != 0;
+	}
+
+	public boolean getCheckmate() {
+		return (flags & CHECKMATE) != 0;
+	}
+
+	public boolean getStalemate() {
+		return (flags & STALEMATE) != 0;
+	}
+
+	// the draw the position is in, or null
+	public DrawReason getDraw() {
+		int draw = (flags >>> DRAW_SHIFT) & 7;
+		return draw == 0 ? null : DRAW_REASONS[draw - 1];
+	}
+
+	// plies since the last capture or pawn move
+	public int getHalfmoveClock() {
+		return halfmoveClock;
+	}
+
+	public int getTurn() {
+		return turn;
+	}
+
+	public long getPositionKey() {
+		return positionKey;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ChessSnapshot))
+			return false;
+		ChessSnapshot other = (ChessSnapshot) obj;
+		return squares0 == other.squares0 && squares1 == other.squares1 && squares2 == other.squares2
+				&& squares3 == other.squares3 && flags == other.flags && turn == other.turn
+				&& halfmoveClock == other.halfmoveClock;
+	}
+
+	// from the fields equals compares; the position key is not one of them, Fen.parse leaves it at 0
+	@Override
+	public int hashCode() {
+		long h = squares0;
+		h = h * 31 + squares1;
+		h = h * 31 + squares2;
+		h = h * 31 + squares3;
+		h = h * 31 + flags;
+		h = h * 31 + turn;
+		h = h * 31 + halfmoveClock;
+		return Long.hashCode(h);
+	}
+}
@@ -0,0 +1,54 @@
+package chess;
+
+/*
+ * A match put away while nobody plays it: the current position as a
+ * snapshot, the position the game started from and the moves made since,
+ * two bytes each. A live ChessMatch holds a board of piece objects, lists
+ * and the undo stack, a few kilobytes; a dormant one holds about a hundred
+ * bytes plus its moves, and a game from the initial position shares that
+ * snapshot with all the others.
+ *
+ * wake() replays the moves to get the full match back, with its captured
+ * pieces and moves to undo. Moves that were taken back and could be redone
+ * are not kept.
+ */
+public final class DormantMatch {
+	private static final ChessSnapshot INITIAL_POSITION = new ChessMatch().snapshot();
+	private static final short[] NO_MOVES = new short[0];
+
+	private final ChessSnapshot initialPosition;
+	private final ChessSnapshot position;
+	// moves packed as described in Move, which fit in 15 bits
+	private final short[] moves;
+
+	DormantMatch(ChessSnapshot initialPosition, int[] moves, ChessSnapshot position) {
+		this.initialPosition = INITIAL_POSITION.equals(initialPosition) ? INITIAL_POSITION : initialPosition;
+		this.position = (moves.length == 0) ? this.initialPosition : position;
+		this.moves = (moves.length == 0) ? NO_MOVES : new short[moves.length];
+		for (int i = 0; i < moves.length; i++) {
+			this.moves[i] = (short) moves[i];
+		}
+	}
+
+	// the current position, readable without waking the match
+	public ChessSnapshot getPosition() {
+		return position;
+	}
+
+	public int getPly() {
+		return moves.length;
+	}
+
+	// a live match in the same state, the moves made so far ready to be undone
+	public ChessMatch wake() {
+		return new ChessMatch(this);
+	}
+
+	ChessSnapshot getInitialPosition() {
+		return initialPosition;
+	}
+
+	int getMove(int ply) {
+		return moves[ply];
+	}
+}
@@ -0,0 +1,8 @@
+package chess;
+
+public enum DrawReason {
+	STALEMATE,
+	REPETITION,
+	FIFTY_MOVES,
+	INSUFFICIENT_MATERIAL;
+}
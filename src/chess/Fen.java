@@ -0,0 +1,152 @@
+package chess;
+
+/*
+ * Forsyth-Edwards Notation. A FEN string is read into a ChessSnapshot, which
+ * ChessMatch turns into a match by placing the pieces straight on the board,
+ * and a snapshot is written back as FEN.
+ */
+final class Fen {
+	private static final PieceType[] TYPES = PieceType.values();
+	private static final String PIECES = "PNBRQK";
+	private static final String CASTLING = "KQkq";
+	private static final int[] CASTLING_RIGHTS = { ChessSnapshot.WHITE_KINGSIDE, ChessSnapshot.WHITE_QUEENSIDE,
+			ChessSnapshot.BLACK_KINGSIDE, ChessSnapshot.BLACK_QUEENSIDE };
+
+	private Fen() {
+	}
+
+	// check flags, draws and position key are left unset, ChessMatch works them out once the pieces are placed
+	static ChessSnapshot parse(String fen) {
+		String[] fields = fen.trim().split("\\s+");
+		if (fields.length < 4 || fields.length > 6)
+			throw new ChessException("Invalid FEN, expected 4 to 6 fields: " + fen);
+
+		long[] squares = new long[4];
+		int kings = 0;
+		String[] ranks = fields[0].split("/", -1);
+		if (ranks.length != 8)
+			throw new ChessException("Invalid FEN, expected 8 ranks: " + fen);
+		for (int row = 0; row < 8; row++) {
+			int col = 0;
+			for (int i = 0; i < ranks[row].length() && col <= 8; i++) {
+				char c = ranks[row].charAt(i);
+				if (c >= '1' && c <= '8') {
+					col += c - '0';
+					continue;
+				}
+				int type = PIECES.indexOf(Character.toUpperCase(c));
+				if (type < 0)
+					throw new ChessException("Invalid FEN, unexpected '" + c + "' in the board: " + fen);
+				if (type == PieceType.PAWN.ordinal() && (row == 0 || row == 7))
+					throw new ChessException("Invalid FEN, pawn on the first or last rank: " + fen);
+				Color color = Character.isUpperCase(c) ? Color.WHITE : Color.BLACK;
+				if (type == PieceType.KING.ordinal())
+					kings += (color == Color.WHITE) ? 1 : 16;
+				if (col < 8)
+					ChessSnapshot.pack(squares, 1L << ChessBoard.square(row, col), color, TYPES[type]);
+				col++;
+			}
+			if (col != 8)
+				throw new ChessException("Invalid FEN, rank " + (8 - row) + " does not have 8 squares: " + fen);
+		}
+		if (kings != 17)
+			throw new ChessException("Invalid FEN, each side needs exactly one king: " + fen);
+
+		Color toMove;
+		if (fields[1].equals("w"))
+			toMove = Color.WHITE;
+		else if (fields[1].equals("b"))
+			toMove = Color.BLACK;
+		else
+			throw new ChessException("Invalid FEN, side to move must be w or b: " + fen);
+
+		int castling = 0;
+		if (!fields[2].equals("-")) {
+			for (int i = 0; i < fields[2].length(); i++) {
+				int index = CASTLING.indexOf(fields[2].charAt(i));
+				if (index < 0 || (castling & CASTLING_RIGHTS[index]) != 0)
+					throw new ChessException("Invalid FEN, bad castling rights: " + fen);
+				castling |= CASTLING_RIGHTS[index];
+			}
+		}
+
+		int enPassant = fields[3].equals("-") ? -1 : square(fields[3]);
+		int halfmoveClock = number(fields, 4, 0, fen);
+		int fullmove = number(fields, 5, 1, fen);
+		if (fullmove < 1)
+			throw new ChessException("Invalid FEN, the fullmove number starts at 1: " + fen);
+		int turn = (fullmove - 1) * 2 + (toMove == Color.WHITE ? 1 : 2);
+		ChessSnapshot snapshot = new ChessSnapshot(squares, toMove, castling, enPassant, false, false, false, null,
+				halfmoveClock, turn, 0L);
+
+		// the target is the square skipped by an opponent pawn that has just moved two squares
+		if (enPassant >= 0) {
+			int pawn = enPassant + (toMove == Color.WHITE ? 8 : -8);
+			if (ChessBoard.row(enPassant) != (toMove == Color.WHITE ? 2 : 5)
+					|| snapshot.getType(pawn) != PieceType.PAWN || snapshot.getColor(pawn) == toMove)
+				throw new ChessException("Invalid FEN, no pawn to take en passant on " + fields[3] + ": " + fen);
+		}
+		return snapshot;
+	}
+
+	static String format(ChessSnapshot snapshot) {
+		StringBuilder sb = new StringBuilder(90);
+		for (int row = 0; row < 8; row++) {
+			if (row > 0)
+				sb.append('/');
+			int empty = 0;
+			for (int col = 0; col < 8; col++) {
+				int square = ChessBoard.square(row, col);
+				PieceType type = snapshot.getType(square);
+				if (type == null) {
+					empty++;
+					continue;
+				}
+				if (empty > 0) {
+					sb.append(empty);
+					empty = 0;
+				}
+				char c = PIECES.charAt(type.ordinal());
+				sb.append(snapshot.getColor(square) == Color.WHITE ? c : Character.toLowerCase(c));
+			}
+			if (empty > 0)
+				sb.append(empty);
+		}
+		sb.append(snapshot.getCurrentPlayer() == Color.WHITE ? " w " : " b ");
+		int castling = snapshot.getCastlingRights();
+		if (castling == 0)
+			sb.append('-');
+		for (int i = 0; i < CASTLING_RIGHTS.length; i++) {
+			if ((castling & CASTLING_RIGHTS[i]) != 0)
+				sb.append(CASTLING.charAt(i));
+		}
+		sb.append(' ');
+		int enPassant = snapshot.getEnPassantSquare();
+		if (enPassant < 0)
+			sb.append('-');
+		else
+			sb.append((char) ('a' + ChessBoard.column(enPassant))).append(8 - ChessBoard.row(enPassant));
+		sb.append(' ').append(snapshot.getHalfmoveClock()).append(' ').append((snapshot.getTurn() + 1) / 2);
+		return sb.toString();
+	}
+
+	private static int square(String name) {
+		if (name.length() != 2 || name.charAt(0) < 'a' || name.charAt(0) > 'h' || name.charAt(1) < '1'
+				|| name.charAt(1) > '8')
+			throw new ChessException("Invalid FEN square: " + name);
+		return ChessBoard.square('8' - name.charAt(1), name.charAt(0) - 'a');
+	}
+
+	private static int number(String[] fields, int index, int missing, String fen) {
+		if (fields.length <= index)
+			return missing;
+		try {
+			int n = Integer.parseInt(fields[index]);
+			if (n < 0)
+				throw new NumberFormatException();
+			return n;
+		} catch (NumberFormatException e) {
+			throw new ChessException("Invalid FEN, bad move counter '" + fields[index] + "': " + fen);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package chess;
+
+/*
+ * Rook and bishop attacks in one table lookup. For every square the
+ * relevant blockers (the empty board rays without their last square) are
+ * masked out of the occupancy and multiplied by a magic number whose top
+ * bits are then a perfect index into the attack sets of that square:
+ *
+ *   attacks = table[offset[sq] + ((occupied & mask[sq]) * magic[sq] >>> shift[sq])]
+ *
+ * The magics below were found by a random search for sparse numbers (the
+ * AND of three random longs) that send the occupancies of a square to
+ * slots without conflicting attack sets. Searching at startup took about
+ * two seconds, so only the attack sets are filled when the class loads,
+ * from the ray lookups of AttackTables. The tables take about 840 KB; the
+ * time they took and their size are kept in INIT_NANOS and BYTES.
+ */
+final class MagicBitboards {
+	private static final int SQUARES = ChessBoard.SIZE * ChessBoard.SIZE;
+
+	private static final long[] ROOK_MASKS = new long[SQUARES];
+	private static final long[] ROOK_MAGICS = {
+			0x1080002080400010L, 0x54C0004290006004L, 0x0A00084020801200L, 0x0200100408220040L,
+			0xC080040002800801L, 0x0300040028010082L, 0x8880010002004080L, 0x4100002480410012L,
+			0x0004800028804001L, 0x0000400020100041L, 0x0010802000100083L, 0x8182002200084010L,
+			0x8005000802110004L, 0x2260808002000400L, 0x0118800100020080L, 0x0002000401248052L,
+			0x0109010020488000L, 0x8001050040008020L, 0x0060014030080040L, 0x0C08008008100480L,
+			0x0002020020041008L, 0x8100818014000200L, 0x0124010100040200L, 0x28800A0002841143L,
+			0x8C00400080008032L, 0x0100200040005004L, 0x0000100080802000L, 0x12D0000900210010L,
+			0x1100080080800400L, 0x0C2A000A00103C08L, 0x0080D00400020128L, 0x8029000100108052L,
+			0xA04000408080002CL, 0x0042400082802010L, 0x0400801000802004L, 0x0081800802801000L,
+			0x0000800400800800L, 0x0420020080800400L, 0x80000110C4000802L, 0x21208410CA000183L,
+			0x0000800100410022L, 0x0060500020004002L, 0x020C120042820020L, 0x0242002010420008L,
+			0x0300100801010004L, 0x0000040002008080L, 0x0050421001140018L, 0x0028088049120004L,
+			0x6310400080002080L, 0x0040810040002500L, 0x000101C014A00500L, 0x8000801000080080L,
+			0x0284000480080080L, 0x1040800400020080L, 0x0844080142100400L, 0x0000010044008200L,
+			0x0002520104644082L, 0x8020204001008011L, 0xA12E8118A2003042L, 0x0011600410010049L,
+			0x1081000208000411L, 0x9101000400020801L, 0x0008300128008204L, 0x0100024102803402L };
+	private static final int[] ROOK_SHIFTS = new int[SQUARES];
+	private static final int[] ROOK_OFFSETS = new int[SQUARES];
+	private static final long[] ROOK_ATTACKS;
+	private static final long[] BISHOP_MASKS = new long[SQUARES];
+	private static final long[] BISHOP_MAGICS = {
+			0x1040108082048220L, 0x0910010808848023L, 0x8028848C02820200L, 0x8111040084000010L,
+			0x1111104004000000L, 0x0002080404041400L, 0x8100483A10100210L, 0x8001008090011082L,
+			0x1008200404008408L, 0x2C4002180810B180L, 0x8004048820810002L, 0x4400080841028430L,
+			0x1208A42420000500L, 0x0040009220200082L, 0x0102040424040420L, 0x3010009044100480L,
+			0x0204102020120A01L, 0x0405000810009208L, 0x0650840808001120L, 0x8084000804101220L,
+			0x8021000820080400L, 0x8240200410041010L, 0x0081140041101001L, 0x1068282100821002L,
+			0x04208A0810020800L, 0x000620C110044490L, 0x0814220004080201L, 0x4412080004004108L,
+			0x8001001013004020L, 0x1008048001100087L, 0x0804008000480408L, 0xA280802406020200L,
+			0x0004242008C0028AL, 0x0412302441420800L, 0x0000105010080280L, 0x60A2020081080080L,
+			0x4020068400008120L, 0x4890010208831000L, 0x0010288220010108L, 0x2044005200844121L,
+			0x0008021084101200L, 0x0001081854004200L, 0x8800140028000400L, 0x0840006124000804L,
+			0x0016081104014040L, 0x200C44A481001200L, 0x1490040850410081L, 0x0810010200940820L,
+			0x2801040104400080L, 0x8080452088204102L, 0x600182404C100010L, 0x0840801142088005L,
+			0x00102110A032040CL, 0x1001082008009100L, 0x0A081081020C0020L, 0x0BC8100440404202L,
+			0x0001044206944000L, 0x2018088209012040L, 0x0011600424220810L, 0x20008000002A0800L,
+			0x0000820011202203L, 0x5C2008C258010108L, 0x1010400204690202L, 0x00204420882B0020L };
+	private static final int[] BISHOP_SHIFTS = new int[SQUARES];
+	private static final int[] BISHOP_OFFSETS = new int[SQUARES];
+	private static final long[] BISHOP_ATTACKS;
+
+	static final long INIT_NANOS;
+	static final long BYTES;
+
+	static {
+		long start = System.nanoTime();
+		ROOK_ATTACKS = build(true, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS);
+		BISHOP_ATTACKS = build(false, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+		INIT_NANOS = System.nanoTime() - start;
+		BYTES = (long) (ROOK_ATTACKS.length + BISHOP_ATTACKS.length) * Long.BYTES
+				+ 2L * SQUARES * (2 * Long.BYTES + 2 * Integer.BYTES);
+	}
+
+	private MagicBitboards() {
+	}
+
+	static long rookAttacks(int square, long occupied) {
+		return ROOK_ATTACKS[ROOK_OFFSETS[square]
+				+ (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+	}
+
+	static long bishopAttacks(int square, long occupied) {
+		return BISHOP_ATTACKS[BISHOP_OFFSETS[square]
+				+ (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+	}
+
+	// fills the attack sets of all squares, one block after the other
+	private static long[] build(boolean rook, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+		int size = 0;
+		for (int square = 0; square < SQUARES; square++) {
+			masks[square] = relevant(square, rook);
+			shifts[square] = 64 - Long.bitCount(masks[square]);
+			offsets[square] = size;
+			size += 1 << Long.bitCount(masks[square]);
+		}
+		long[] table = new long[size];
+		for (int square = 0; square < SQUARES; square++) {
+			long mask = masks[square];
+			// every subset of the mask, by the carry-rippler trick
+			long subset = 0L;
+			do {
+				long attacks = rook ? AttackTables.rookAttacks(square, subset) : AttackTables.bishopAttacks(square, subset);
+				int index = offsets[square] + (int) ((subset * magics[square]) >>> shifts[square]);
+				// an empty slot may be taken, an attack set never shares one with another
+				if (table[index] != 0 && table[index] != attacks)
+					throw new IllegalStateException("Bad magic for square " + square);
+				table[index] = attacks;
+				subset = (subset - mask) & mask;
+			} while (subset != 0);
+		}
+		return table;
+	}
+
+	// squares whose occupancy changes the attacks: the rays without the edge square they end on
+	private static long relevant(int square, boolean rook) {
+		int first = rook ? AttackTables.NORTH : AttackTables.NORTH_WEST;
+		long mask = 0L;
+		for (int d = first; d < first + 4; d++) {
+			long ray = AttackTables.RAYS[d][square];
+			if (ray == 0)
+				continue;
+			// the last square of a ray is the one farthest from the square
+			boolean lower = Long.numberOfTrailingZeros(ray) < square;
+			int last = lower ? Long.numberOfTrailingZeros(ray) : 63 - Long.numberOfLeadingZeros(ray);
+			mask |= ray & ~(1L << last);
+		}
+		return mask;
+	}
+}
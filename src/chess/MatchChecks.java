@@ -0,0 +1,107 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Regression checks for the undo records and the draw state of ChessMatch:
+ * each one replays a case that was once wrong and prints whether it holds
+ * now. Like Perft, it runs from the build (see the matchChecks task) and
+ * exits with 1 when a check fails.
+ */
+public class MatchChecks {
+	private static final String[] KNIGHT_SHUFFLE = { "Nf3", "Nf6", "Ng1", "Ng8" };
+
+	private int failures;
+
+	public static void main(String[] args) {
+		MatchChecks checks = new MatchChecks();
+		checks.undoRestoresLongClock();
+		checks.wokenMatchKeepsDraws();
+		checks.copyKeepsRepetitions();
+		checks.fenAfterMateRoundTrips();
+		System.out.println(checks.failures == 0 ? "All match checks pass" : checks.failures + " MATCH CHECKS FAILED");
+		if (checks.failures > 0)
+			System.exit(1);
+	}
+
+	// the undo record once kept the halfmove clock in 8 bits, so undoing lost the clock past 255
+	private void undoRestoresLongClock() {
+		ChessMatch match = ChessMatch.fromFen("4k3/8/8/8/8/8/8/R3K3 w - - 300 200");
+		Random random = new Random(1);
+		List<String> fens = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			int[] moves = match.legalMoves();
+			if (moves.length == 0)
+				break;
+			fens.add(match.toFen());
+			match.makeMove(moves[random.nextInt(moves.length)]);
+		}
+		boolean ok = true;
+		for (int i = fens.size() - 1; i >= 0; i--) {
+			match.undoMove();
+			ok &= match.toFen().equals(fens.get(i));
+		}
+		report("undo restores a halfmove clock past 255", ok && match.getHalfmoveClock() == 300);
+	}
+
+	// a match woken from a DormantMatch once had the draw state of the last ply only, so undoing lost it
+	private void wokenMatchKeepsDraws() {
+		ChessMatch match = new ChessMatch();
+		play(match, KNIGHT_SHUFFLE);
+		play(match, KNIGHT_SHUFFLE);
+		play(match, "e4");
+		ChessMatch woken = match.toDormant().wake();
+		boolean ok = woken.getDraw() == match.getDraw();
+		while (match.canUndo()) {
+			match.undoMove();
+			woken.undoMove();
+			ok &= woken.getDraw() == match.getDraw() && woken.getPositionKey() == match.getPositionKey();
+		}
+		match.goToPly(8);
+		woken.goToPly(8);
+		report("a woken match keeps the draw state of each ply",
+				ok && woken.getDraw() == DrawReason.REPETITION && match.getDraw() == DrawReason.REPETITION);
+	}
+
+	// a copy once rebuilt its repetition counts from the undo history, which a copy or a loaded match lacks
+	private void copyKeepsRepetitions() {
+		ChessMatch match = new ChessMatch();
+		play(match, KNIGHT_SHUFFLE);
+		ChessMatch copy = match.copy();
+		ChessMatch copyOfCopy = copy.copy();
+		ChessMatch loaded = new ChessMatch(match.snapshot());
+		play(loaded, KNIGHT_SHUFFLE);
+		ChessMatch loadedCopy = loaded.copy();
+		play(match, KNIGHT_SHUFFLE);
+		play(copy, KNIGHT_SHUFFLE);
+		play(copyOfCopy, KNIGHT_SHUFFLE);
+		play(loadedCopy, KNIGHT_SHUFFLE);
+		report("a copy keeps the positions that can repeat", match.getDraw() == DrawReason.REPETITION
+				&& copy.getDraw() == DrawReason.REPETITION && copyOfCopy.getDraw() == DrawReason.REPETITION
+				&& loadedCopy.getDraw() == DrawReason.REPETITION);
+	}
+
+	// after mate the turn is not passed, the FEN still has the mated side to move
+	private void fenAfterMateRoundTrips() {
+		ChessMatch match = new ChessMatch();
+		play(match, "f3", "e5", "g4", "Qh4");
+		String fen = match.toFen();
+		ChessMatch loaded = ChessMatch.fromFen(fen);
+		report("the FEN of a mate loads back as the same mate", match.getCheckmate() && loaded.getCheckmate()
+				&& fen.equals(loaded.toFen()) && loaded.getCurrentPlayer() == match.getCurrentPlayer());
+	}
+
+	private static void play(ChessMatch match, String... moves) {
+		for (String san : moves) {
+			match.performChessMove(San.parse(match, san));
+		}
+	}
+
+	private void report(String name, boolean ok) {
+		System.out.println((ok ? "ok      " : "FAILED  ") + name);
+		if (!ok)
+			failures++;
+	}
+}
@@ -0,0 +1,51 @@
+package chess;
+
+/*
+ * Moves are packed into a single int so that move lists can live in plain
+ * int[] buffers: bits 0-5 hold the source square, bits 6-11 the target square
+ * (see ChessBoard.square) and bits 12-14 the PieceType ordinal of the
+ * promotion piece, or 0 when the move is not a promotion.
+ */
+public final class Move {
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private Move() {
+	}
+
+	public static int of(int from, int to) {
+		return from | (to << 6);
+	}
+
+	public static int of(int from, int to, PieceType promotion) {
+		return from | (to << 6) | (promotion.ordinal() << 12);
+	}
+
+	public static int from(int move) {
+		return move & 63;
+	}
+
+	public static int to(int move) {
+		return (move >>> 6) & 63;
+	}
+
+	public static PieceType promotion(int move) {
+		int type = (move >>> 12) & 7;
+		return type == 0 ? null : TYPES[type];
+	}
+
+	// coordinate notation, e.g. "e2e4" or "e7e8q"
+	public static String toString(int move) {
+		StringBuilder sb = new StringBuilder(5);
+		appendSquare(sb, from(move));
+		appendSquare(sb, to(move));
+		PieceType promotion = promotion(move);
+		if (promotion != null)
+			sb.append("pnbrqk".charAt(promotion.ordinal()));
+		return sb.toString();
+	}
+
+	private static void appendSquare(StringBuilder sb, int square) {
+		sb.append((char) ('a' + ChessBoard.column(square)));
+		sb.append((char) ('8' - ChessBoard.row(square)));
+	}
+}
@@ -0,0 +1,155 @@
+package chess;
+
+/*
+ * Legal move generation. Instead of trying every pseudo-legal move and
+ * looking for check afterwards, the pieces pinned to the king and the set of
+ * squares that resolve a check are computed once per call and every piece's
+ * targets are masked with them. Only the king (whose own square must not be
+ * attacked) and en passant (which removes two pieces from a rank) are tested
+ * square by square.
+ */
+final class MoveGenerator {
+	private static final PieceType[] PROMOTIONS = { PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP,
+			PieceType.KNIGHT };
+
+	private final ChessBoard board;
+	private int[] scratch;
+
+	MoveGenerator(ChessBoard board) {
+		this.board = board;
+	}
+
+	int generate(Color color, int[] moves) {
+		return generate(color, moves, false);
+	}
+
+	boolean hasLegalMove(Color color) {
+		return generate(color, scratch(), true) > 0;
+	}
+
+	boolean isLegal(Color color, int from, int to) {
+		int[] scratch = scratch();
+		int count = generate(color, scratch, false);
+		for (int i = 0; i < count; i++) {
+			if (Move.from(scratch[i]) == from && Move.to(scratch[i]) == to)
+				return true;
+		}
+		return false;
+	}
+
+	// allocated on first use, copies of a match that are never asked for moves do not pay for it
+	private int[] scratch() {
+		if (scratch == null)
+			scratch = new int[ChessMatch.MAX_MOVES];
+		return scratch;
+	}
+
+	private int generate(Color color, int[] moves, boolean firstOnly) {
+		Color opponent = (color == Color.WHITE) ? Color.BLACK : Color.WHITE;
+		int kingSquare = board.getKingSquare(color);
+		if (kingSquare < 0)
+			throw new IllegalStateException("There is no " + color + " king on the board");
+		long kings = 1L << kingSquare;
+		long occupied = board.getOccupied();
+		int count = 0;
+
+		// king moves, including castling
+		long targets = board.pieceAt(kingSquare).targets();
+		long checkers = board.attackersOf(kingSquare, opponent);
+		long withoutKing = occupied & ~kings;
+		while (targets != 0) {
+			int to = Long.numberOfTrailingZeros(targets);
+			targets &= targets - 1;
+			boolean legal;
+			if (Math.abs(to - kingSquare) == 2) {
+				int passed = (to + kingSquare) / 2;
+				legal = checkers == 0 && !board.isAttacked(passed, opponent) && !board.isAttacked(to, opponent);
+			} else {
+				legal = !board.isAttacked(to, opponent, withoutKing);
+			}
+			if (legal) {
+				moves[count++] = Move.of(kingSquare, to);
+				if (firstOnly)
+					return count;
+			}
+		}
+
+		// in double check only the king can move
+		if (Long.bitCount(checkers) > 1)
+			return count;
+
+		long checkMask = -1L;
+		if (checkers != 0) {
+			int checker = Long.numberOfTrailingZeros(checkers);
+			checkMask = checkers | AttackTables.BETWEEN[kingSquare][checker];
+		}
+		long pinned = pinnedPieces(kingSquare, color, opponent);
+
+		long pieces = board.getPieces(color) & ~kings;
+		while (pieces != 0) {
+			int from = Long.numberOfTrailingZeros(pieces);
+			pieces &= pieces - 1;
+			ChessPiece piece = board.pieceAt(from);
+			targets = piece.targets();
+			boolean pawn = piece.getType() == PieceType.PAWN;
+
+			// #specialmove en passant
+			if (pawn) {
+				long diagonal = ChessBoard.pawnAttacks(from, color) & ~occupied & targets;
+				if (diagonal != 0) {
+					targets &= ~diagonal;
+					int to = Long.numberOfTrailingZeros(diagonal);
+					if (isLegalEnPassant(from, to, kingSquare, opponent)) {
+						moves[count++] = Move.of(from, to);
+						if (firstOnly)
+							return count;
+					}
+				}
+			}
+
+			targets &= checkMask;
+			// a pinned piece stays on the line through its king
+			if ((pinned & (1L << from)) != 0)
+				targets &= AttackTables.LINE[kingSquare][from];
+			while (targets != 0) {
+				int to = Long.numberOfTrailingZeros(targets);
+				targets &= targets - 1;
+				int row = ChessBoard.row(to);
+				if (pawn && (row == 0 || row == ChessBoard.SIZE - 1)) {
+					for (PieceType type : PROMOTIONS) {
+						moves[count++] = Move.of(from, to, type);
+					}
+				} else {
+					moves[count++] = Move.of(from, to);
+				}
+				if (firstOnly)
+					return count;
+			}
+		}
+		return count;
+	}
+
+	// own pieces standing alone between the king and an opponent slider aimed at it
+	private long pinnedPieces(int kingSquare, Color color, Color opponent) {
+		long queens = board.getPieces(opponent, PieceType.QUEEN);
+		long snipers = (AttackTables.ROOK[kingSquare] & (board.getPieces(opponent, PieceType.ROOK) | queens))
+				| (AttackTables.BISHOP[kingSquare] & (board.getPieces(opponent, PieceType.BISHOP) | queens));
+		long occupied = board.getOccupied();
+		long own = board.getPieces(color);
+		long pinned = 0L;
+		while (snipers != 0) {
+			int sniper = Long.numberOfTrailingZeros(snipers);
+			snipers &= snipers - 1;
+			long blockers = AttackTables.BETWEEN[kingSquare][sniper] & occupied;
+			if (blockers != 0 && (blockers & (blockers - 1)) == 0)
+				pinned |= blockers & own;
+		}
+		return pinned;
+	}
+
+	private boolean isLegalEnPassant(int from, int to, int kingSquare, Color opponent) {
+		int captured = ChessBoard.square(ChessBoard.row(from), ChessBoard.column(to));
+		long occupied = (board.getOccupied() & ~(1L << from) & ~(1L << captured)) | (1L << to);
+		return (board.attackersOf(kingSquare, opponent, occupied) & ~(1L << captured)) == 0;
+	}
+}
@@ -0,0 +1,96 @@
+package chess;
+
+import java.io.PrintStream;
+
+/*
+ * Counts the leaf nodes of the legal move tree to a fixed depth using
+ * ChessMatch's own makeMove/undoMove, on a copy of the match so the one
+ * given keeps the moves it can redo. The counts of the reference positions
+ * below are published values, so a mismatch means the move generator or the
+ * make/undo code is wrong; the timings serve as a speed baseline.
+ */
+public class Perft {
+
+	// name, FEN and the node counts at depth 1, 2, ... from the Chess Programming Wiki perft results page
+	private static final String[][] POSITIONS = {
+			{ "startpos", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1" },
+			{ "kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1" },
+			{ "position3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1" },
+			{ "position4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1" },
+			{ "position5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8" },
+			{ "position6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10" } };
+	private static final long[][] EXPECTED = { { 20, 400, 8902, 197281, 4865609 },
+			{ 48, 2039, 97862, 4085603 },
+			{ 14, 191, 2812, 43238, 674624 },
+			{ 6, 264, 9467, 422333 },
+			{ 44, 1486, 62379, 2103487 },
+			{ 46, 2079, 89890, 3894594 } };
+
+	private final ChessMatch match;
+	private final int[][] moves;
+
+	public Perft(ChessMatch match, int maxDepth) {
+		this.match = match.copy();
+		this.moves = new int[Math.max(maxDepth, 1)][ChessMatch.MAX_MOVES];
+	}
+
+	public long perft(int depth) {
+		int[] buffer = moves[depth - 1];
+		int count = match.legalMoves(buffer);
+		if (depth == 1)
+			return count;
+		long nodes = 0;
+		for (int i = 0; i < count; i++) {
+			match.makeMove(buffer[i]);
+			nodes += perft(depth - 1);
+			match.undoMove();
+		}
+		return nodes;
+	}
+
+	// perft split by root move, as printed by most engines
+	public long divide(int depth, PrintStream out) {
+		int[] buffer = moves[depth - 1];
+		int count = match.legalMoves(buffer);
+		long total = 0;
+		for (int i = 0; i < count; i++) {
+			long nodes = 1;
+			if (depth > 1) {
+				match.makeMove(buffer[i]);
+				nodes = perft(depth - 1);
+				match.undoMove();
+			}
+			out.println(Move.toString(buffer[i]) + ": " + nodes);
+			total += nodes;
+		}
+		out.println();
+		out.println("Nodes searched: " + total);
+		return total;
+	}
+
+	// runs the reference suites up to the given depth (default 5) and exits with 1 on any mismatch
+	public static void main(String[] args) {
+		int maxDepth = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+		System.out.printf("Slider tables: %,d KB, built in %.1f ms%n", MagicBitboards.BYTES / 1024,
+				MagicBitboards.INIT_NANOS / 1e6);
+		boolean ok = true;
+		for (int i = 0; i < POSITIONS.length; i++) {
+			for (int depth = 1; depth <= Math.min(maxDepth, EXPECTED[i].length); depth++) {
+				ok &= run(POSITIONS[i][0], ChessMatch.fromFen(POSITIONS[i][1]), depth, EXPECTED[i][depth - 1],
+						System.out);
+			}
+		}
+		System.out.println(ok ? "All perft counts match" : "PERFT MISMATCH");
+		if (!ok)
+			System.exit(1);
+	}
+
+	private static boolean run(String name, ChessMatch match, int depth, long expected, PrintStream out) {
+		long start = System.nanoTime();
+		long nodes = new Perft(match, depth).perft(depth);
+		long elapsed = Math.max(System.nanoTime() - start, 1);
+		out.printf("%-10s depth %d: %,12d nodes (expected %,d) %8.1f ms %,12d nps%s%n", name, depth, nodes,
+				expected, elapsed / 1e6, nodes * 1_000_000_000L / elapsed, nodes == expected ? "" : "  <-- MISMATCH");
+		return nodes == expected;
+	}
+}
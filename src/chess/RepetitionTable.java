@@ -0,0 +1,104 @@
+package chess;
+
+import java.util.Arrays;
+
+/*
+ * How many times each position key occurred since the last capture or pawn
+ * move, the only positions that can come back. An open addressing table of
+ * keys and counts, probed linearly; a slot with a count of 0 is empty, and
+ * removing a key shifts the following keys of its run back so probes never
+ * meet a hole. ChessMatch clears it on every irreversible move, so it stays
+ * as small as the reversible window.
+ */
+final class RepetitionTable {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] keys;
+	private int[] counts;
+	private int size;
+
+	RepetitionTable() {
+		keys = new long[INITIAL_CAPACITY];
+		counts = new int[INITIAL_CAPACITY];
+	}
+
+	RepetitionTable(RepetitionTable source) {
+		keys = source.keys.clone();
+		counts = source.counts.clone();
+		size = source.size;
+	}
+
+	// counts one more occurrence of the key and returns how many there are
+	int add(long key) {
+		if (2 * (size + 1) > keys.length)
+			grow();
+		int i = find(key);
+		if (counts[i] == 0) {
+			keys[i] = key;
+			size++;
+		}
+		return ++counts[i];
+	}
+
+	int count(long key) {
+		return counts[find(key)];
+	}
+
+	// takes back one occurrence of a key that was added
+	void remove(long key) {
+		int i = find(key);
+		if (counts[i] == 0)
+			throw new IllegalStateException("Position key " + Long.toHexString(key) + " is not in the table");
+		if (--counts[i] > 0)
+			return;
+		size--;
+		int mask = keys.length - 1;
+		int hole = i;
+		for (int j = (i + 1) & mask; counts[j] != 0; j = (j + 1) & mask) {
+			// a key may fill the hole unless its home slot lies after the hole, on its way to j
+			int home = slot(keys[j]);
+			if (((j - home) & mask) >= ((j - hole) & mask)) {
+				keys[hole] = keys[j];
+				counts[hole] = counts[j];
+				counts[j] = 0;
+				hole = j;
+			}
+		}
+	}
+
+	void clear() {
+		if (size > 0) {
+			Arrays.fill(counts, 0);
+			size = 0;
+		}
+	}
+
+	// slot holding the key, or the empty slot where it would go
+	private int find(long key) {
+		int mask = keys.length - 1;
+		int i = slot(key);
+		while (counts[i] != 0 && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private int slot(long key) {
+		// the low bits of a Zobrist key are already uniform
+		return (int) key & (keys.length - 1);
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldCounts = counts;
+		keys = new long[oldKeys.length * 2];
+		counts = new int[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldCounts[i] != 0) {
+				int j = find(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				counts[j] = oldCounts[i];
+			}
+		}
+	}
+}
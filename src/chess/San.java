@@ -0,0 +1,180 @@
+package chess;
+
+/*
+ * Standard Algebraic Notation, as used in PGN: "e4", "Nbd7", "exd6",
+ * "R1e2+", "O-O-O", "e8=Q#". Both directions work on the position the move
+ * is played from, since the piece letter, the disambiguation and the check
+ * suffix all depend on it.
+ */
+public final class San {
+	private static final String PIECES = "PNBRQK";
+
+	private San() {
+	}
+
+	// the legal move of the player to move written as san; check and mate marks are optional
+	public static int parse(ChessMatch match, String san) {
+		String s = san;
+		while (!s.isEmpty() && "+#!?".indexOf(s.charAt(s.length() - 1)) >= 0) {
+			s = s.substring(0, s.length() - 1);
+		}
+		int[] moves = match.legalMoves();
+		if (s.equals("O-O") || s.equals("0-0") || s.equals("O-O-O") || s.equals("0-0-0")) {
+			int offset = (s.length() == 3) ? 2 : -2;
+			for (int move : moves) {
+				ChessPiece piece = match.pieceAt(Move.from(move));
+				if (piece.getType() == PieceType.KING && Move.to(move) - Move.from(move) == offset)
+					return move;
+			}
+			throw new ChessException("Illegal move " + san);
+		}
+
+		int end = s.length();
+		PieceType promotion = null;
+		int promotionIndex = (end > 0) ? PIECES.indexOf(Character.toUpperCase(s.charAt(end - 1))) : -1;
+		if (promotionIndex > 0 && end >= 3 && Character.isDigit(s.charAt(end - 2))
+				|| promotionIndex > 0 && end >= 4 && s.charAt(end - 2) == '=') {
+			promotion = PieceType.values()[promotionIndex];
+			end -= (s.charAt(end - 2) == '=') ? 2 : 1;
+		}
+		if (end < 2 || !isFile(s.charAt(end - 2)) || !isRank(s.charAt(end - 1)))
+			throw new ChessException("Invalid move " + san);
+		int to = square(s.charAt(end - 2), s.charAt(end - 1));
+
+		int start = 0;
+		PieceType type = PieceType.PAWN;
+		int pieceIndex = PIECES.indexOf(s.charAt(0));
+		if (pieceIndex > 0) {
+			type = PieceType.values()[pieceIndex];
+			start = 1;
+		}
+		// what is left between the piece letter and the target: file and/or rank of the source, and 'x'
+		int fromFile = -1;
+		int fromRank = -1;
+		for (int i = start; i < end - 2; i++) {
+			char c = s.charAt(i);
+			if (isFile(c))
+				fromFile = c - 'a';
+			else if (isRank(c))
+				fromRank = '8' - c;
+			else if (c != 'x' && c != ':' && c != '-')
+				throw new ChessException("Invalid move " + san);
+		}
+
+		// a pawn reaching the last rank without a suffix promotes to a queen, as in performChessMove
+		if (promotion == null && type == PieceType.PAWN && (ChessBoard.row(to) == 0 || ChessBoard.row(to) == 7))
+			promotion = PieceType.QUEEN;
+
+		int found = -1;
+		for (int move : moves) {
+			int from = Move.from(move);
+			if (Move.to(move) != to || Move.promotion(move) != promotion
+					|| match.pieceAt(from).getType() != type
+					|| (fromFile >= 0 && ChessBoard.column(from) != fromFile)
+					|| (fromRank >= 0 && ChessBoard.row(from) != fromRank))
+				continue;
+			if (found >= 0)
+				throw new ChessException("Ambiguous move " + san);
+			found = move;
+		}
+		if (found < 0)
+			throw new ChessException("Illegal move " + san);
+		return found;
+	}
+
+	// the legal move written as san, with a '+' or '#' suffix; tried on a copy of the match, as making and
+	// undoing the move would drop the moves the match can redo, so a whole game is better written with
+	// format(ChessMatch, int[])
+	public static String format(ChessMatch match, int move) {
+		StringBuilder sb = write(match, move);
+		ChessMatch after = match.copy();
+		after.makeMove(move);
+		appendCheck(sb, after, new int[ChessMatch.MAX_MOVES]);
+		return sb.toString();
+	}
+
+	// the legal moves of a game played from the match's position, as san; they are played on one copy
+	public static String[] format(ChessMatch match, int[] moves) {
+		ChessMatch replay = match.copy();
+		String[] san = new String[moves.length];
+		int[] buffer = new int[ChessMatch.MAX_MOVES];
+		for (int i = 0; i < moves.length; i++) {
+			StringBuilder sb = write(replay, moves[i]);
+			replay.makeMove(moves[i]);
+			appendCheck(sb, replay, buffer);
+			san[i] = sb.toString();
+		}
+		return san;
+	}
+
+	private static StringBuilder write(ChessMatch match, int move) {
+		int from = Move.from(move);
+		int to = Move.to(move);
+		ChessPiece piece = match.pieceAt(from);
+		PieceType type = piece.getType();
+		boolean capture = match.pieceAt(to) != null;
+		StringBuilder sb = new StringBuilder(8);
+
+		if (type == PieceType.KING && Math.abs(to - from) == 2) {
+			sb.append(to > from ? "O-O" : "O-O-O");
+		} else if (type == PieceType.PAWN) {
+			// #specialmove en passant: a pawn changing file always captures
+			if (ChessBoard.column(from) != ChessBoard.column(to)) {
+				sb.append((char) ('a' + ChessBoard.column(from)));
+				capture = true;
+			}
+		} else {
+			sb.append(PIECES.charAt(type.ordinal()));
+			appendDisambiguation(sb, match, move, type);
+		}
+		if (sb.length() == 0 || sb.charAt(0) != 'O') {
+			if (capture)
+				sb.append('x');
+			sb.append((char) ('a' + ChessBoard.column(to))).append((char) ('8' - ChessBoard.row(to)));
+			PieceType promotion = Move.promotion(move);
+			if (promotion != null)
+				sb.append('=').append(PIECES.charAt(promotion.ordinal()));
+		}
+		return sb;
+	}
+
+	// the suffix of the move that led to the match's position
+	private static void appendCheck(StringBuilder sb, ChessMatch after, int[] buffer) {
+		if (after.getCheck())
+			sb.append(after.legalMoves(buffer) == 0 ? '#' : '+');
+	}
+
+	// file, rank or both of the source square when another piece of the same type can reach the same square
+	private static void appendDisambiguation(StringBuilder sb, ChessMatch match, int move, PieceType type) {
+		int from = Move.from(move);
+		boolean ambiguous = false;
+		boolean sameFile = false;
+		boolean sameRank = false;
+		for (int other : match.legalMoves()) {
+			int otherFrom = Move.from(other);
+			if (otherFrom == from || Move.to(other) != Move.to(move) || match.pieceAt(otherFrom).getType() != type)
+				continue;
+			ambiguous = true;
+			sameFile |= ChessBoard.column(otherFrom) == ChessBoard.column(from);
+			sameRank |= ChessBoard.row(otherFrom) == ChessBoard.row(from);
+		}
+		if (!ambiguous)
+			return;
+		if (!sameFile || sameRank)
+			sb.append((char) ('a' + ChessBoard.column(from)));
+		if (sameFile)
+			sb.append((char) ('8' - ChessBoard.row(from)));
+	}
+
+	private static boolean isFile(char c) {
+		return c >= 'a' && c <= 'h';
+	}
+
+	private static boolean isRank(char c) {
+		return c >= '1' && c <= '8';
+	}
+
+	private static int square(char file, char rank) {
+		return ChessBoard.square('8' - rank, file - 'a');
+	}
+}
@@ -0,0 +1,62 @@
+package chess;
+
+/*
+ * Random keys for Zobrist hashing: a position's key is the xor of one key per
+ * (piece, square) plus keys for the side to move, the castling rights and
+ * the file of a capturable en passant pawn. The keys come from a fixed seed
+ * so that keys stored on disk stay valid between runs.
+ */
+final class Zobrist {
+	private static final int TYPES = PieceType.values().length;
+	private static final long[] PIECES = new long[2 * TYPES * 64];
+	private static final long[] CASTLING = new long[16];
+	private static final long[] EN_PASSANT = new long[8];
+	private static final long BLACK_TO_MOVE;
+
+	static {
+		long seed = 0x3243F6A8885A308DL;
+		for (int i = 0; i < PIECES.length; i++) {
+			seed += 0x9E3779B97F4A7C15L;
+			PIECES[i] = mix(seed);
+		}
+		for (int i = 1; i < CASTLING.length; i++) {
+			seed += 0x9E3779B97F4A7C15L;
+			CASTLING[i] = mix(seed);
+		}
+		for (int i = 0; i < EN_PASSANT.length; i++) {
+			seed += 0x9E3779B97F4A7C15L;
+			EN_PASSANT[i] = mix(seed);
+		}
+		seed += 0x9E3779B97F4A7C15L;
+		BLACK_TO_MOVE = mix(seed);
+	}
+
+	private Zobrist() {
+	}
+
+	static long piece(Color color, PieceType type, int square) {
+		return PIECES[((color.ordinal() * TYPES) + type.ordinal()) * 64 + square];
+	}
+
+	// castling is a combination of the ChessSnapshot castling flags, enPassantFile is -1 when there is none
+	static long state(Color toMove, int castling, int enPassantFile) {
+		long key = CASTLING[castling];
+		if (enPassantFile >= 0)
+			key ^= EN_PASSANT[enPassantFile];
+		if (toMove == Color.BLACK)
+			key ^= BLACK_TO_MOVE;
+		return key;
+	}
+
+	// toggles the side to move of a key
+	static long sideToMove() {
+		return BLACK_TO_MOVE;
+	}
+
+	// splitmix64 finalizer
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
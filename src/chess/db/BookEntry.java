@@ -0,0 +1,40 @@
+package chess.db;
+
+import chess.Move;
+
+// one move of an OpeningBook position: how often it was played and how it scored for the side playing it
+public class BookEntry {
+	private final int move;
+	private final int count;
+	private final int weight;
+
+	BookEntry(int move, int count, int weight) {
+		this.move = move;
+		this.count = count;
+		this.weight = weight;
+	}
+
+	// packed as described in chess.Move
+	public int getMove() {
+		return move;
+	}
+
+	// number of games the move was played in
+	public int getCount() {
+		return count;
+	}
+
+	// points scored by the side playing the move, from 0 (all lost) to OpeningBook.MAX_WEIGHT (all won)
+	public int getWeight() {
+		return weight;
+	}
+
+	public double getScore() {
+		return (double) weight / OpeningBook.MAX_WEIGHT;
+	}
+
+	@Override
+	public String toString() {
+		return Move.toString(move) + " " + count + " games " + Math.round(getScore() * 100) + "%";
+	}
+}
@@ -0,0 +1,166 @@
+package chess.db;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import chess.PieceType;
+
+/*
+ * The pieces of an endgame table, written like "KQKR": one side starting
+ * with its king, then the other. The canonical form puts the stronger side
+ * first as white and orders each side K Q R B N P; positions with the
+ * colors the other way round are probed mirrored. Pieces are numbered in
+ * that order (slots) and side 0 is white. The signature packs the count of
+ * every piece type but the king in two bits, so the table of a position is
+ * found from its bitboards alone.
+ */
+final class EndgameMaterial {
+	static final int MAX_PIECES = 4;
+	static final int WHITE = 0;
+	static final int BLACK = 1;
+	private static final String LETTERS = "KQRBNP";
+	private static final PieceType[] LETTER_TYPES = { PieceType.KING, PieceType.QUEEN, PieceType.ROOK,
+			PieceType.BISHOP, PieceType.KNIGHT, PieceType.PAWN };
+	private static final int[] LETTER_VALUES = { 0, 9, 5, 3, 3, 1 };
+
+	final String name;
+	final int[] sides;
+	final PieceType[] types;
+	final int signature;
+
+	private EndgameMaterial(String name) {
+		this.name = name;
+		int pieces = name.length();
+		sides = new int[pieces];
+		types = new PieceType[pieces];
+		int side = -1;
+		int counts = 0;
+		for (int i = 0; i < pieces; i++) {
+			PieceType type = LETTER_TYPES[LETTERS.indexOf(name.charAt(i))];
+			if (type == PieceType.KING)
+				side++;
+			sides[i] = side;
+			types[i] = type;
+			if (type != PieceType.KING)
+				counts += 1 << shift(side, type);
+		}
+		signature = counts;
+	}
+
+	// canonical material of a string like "KQKR" or "KRKQ"
+	static EndgameMaterial parse(String material) {
+		String s = material.trim().toUpperCase();
+		int second = s.indexOf('K', 1);
+		if (!s.startsWith("K") || second < 0 || s.indexOf('K', second + 1) >= 0)
+			throw new IllegalArgumentException("Material must name both kings, as in KQKR: " + material);
+		if (s.length() > MAX_PIECES)
+			throw new IllegalArgumentException("Tables have at most " + MAX_PIECES + " pieces: " + material);
+		if (s.length() == 2)
+			throw new IllegalArgumentException("Two bare kings are always a draw: " + material);
+		String white = sortSide(s.substring(0, second), material);
+		String black = sortSide(s.substring(second), material);
+		if (compareSides(white, black) < 0) {
+			String t = white;
+			white = black;
+			black = t;
+		}
+		// both sides would need pawns for en passant, which the tables do not record
+		if (white.indexOf('P') >= 0 && black.indexOf('P') >= 0)
+			throw new IllegalArgumentException("Pawns on both sides are not supported: " + material);
+		return new EndgameMaterial(white + black);
+	}
+
+	static int shift(int side, PieceType type) {
+		return 2 * (side * 5 + type.ordinal());
+	}
+
+	// the signature of the same pieces with the colors swapped
+	static int flip(int signature) {
+		return ((signature & 0x3FF) << 10) | (signature >>> 10);
+	}
+
+	int size() {
+		return types.length;
+	}
+
+	// positions of the table: the side to move and one square per slot
+	int entries() {
+		return 2 << (6 * types.length);
+	}
+
+	int index(int[] squares, int toMove) {
+		int index = toMove;
+		for (int square : squares) {
+			index = (index << 6) | square;
+		}
+		return index;
+	}
+
+	// the materials a capture or a promotion leads to, each with a non-king piece left
+	List<EndgameMaterial> conversions() {
+		Set<String> names = new LinkedHashSet<>();
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == 'K')
+				continue;
+			String captured = name.substring(0, i) + name.substring(i + 1);
+			if (captured.length() > 2)
+				names.add(parse(captured).name);
+			if (c == 'P') {
+				for (char promotion : "QRBN".toCharArray()) {
+					names.add(parse(name.substring(0, i) + promotion + name.substring(i + 1)).name);
+				}
+			}
+		}
+		List<EndgameMaterial> materials = new ArrayList<>(names.size());
+		for (String n : names) {
+			materials.add(new EndgameMaterial(n));
+		}
+		return materials;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	private static String sortSide(String side, String material) {
+		char[] pieces = side.toCharArray();
+		for (int i = 1; i < pieces.length; i++) {
+			if (LETTERS.indexOf(pieces[i]) <= 0)
+				throw new IllegalArgumentException("Unknown piece '" + pieces[i] + "' in " + material);
+		}
+		// insertion sort by the K Q R B N P order
+		for (int i = 2; i < pieces.length; i++) {
+			char p = pieces[i];
+			int j = i - 1;
+			while (j > 0 && LETTERS.indexOf(pieces[j]) > LETTERS.indexOf(p)) {
+				pieces[j + 1] = pieces[j];
+				j--;
+			}
+			pieces[j + 1] = p;
+		}
+		return new String(pieces);
+	}
+
+	// by material value, then by number of pieces, then by the strongest piece
+	private static int compareSides(String a, String b) {
+		int diff = value(a) - value(b);
+		if (diff == 0)
+			diff = a.length() - b.length();
+		for (int i = 1; diff == 0 && i < a.length(); i++) {
+			diff = LETTERS.indexOf(b.charAt(i)) - LETTERS.indexOf(a.charAt(i));
+		}
+		return diff;
+	}
+
+	private static int value(String side) {
+		int value = 0;
+		for (int i = 0; i < side.length(); i++) {
+			value += LETTER_VALUES[LETTERS.indexOf(side.charAt(i))];
+		}
+		return value;
+	}
+}
@@ -0,0 +1,358 @@
+package chess.db;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import chess.ChessMatch;
+
+/*
+ * Sorts more (key, value) pairs than fit in the heap. Pairs are spilled
+ * into partition files chosen by the top bits of the key, then drain()
+ * reads the partitions back one at a time in key order, radix sorts each
+ * and hands the pairs over sorted by key and then value, both unsigned. A
+ * partition holds about PARTITION_ENTRIES pairs when the keys are spread
+ * evenly. Keys that repeat or cluster can make one much larger; such a
+ * partition is sorted in runs of PARTITION_ENTRIES pairs, which are merged
+ * as they are read back. At most 2 * PARTITION_ENTRIES pairs are read
+ * into memory at a time.
+ */
+final class ExternalSort implements Closeable {
+	private static final int PARTITION_ENTRIES = 1 << 22;
+	private static final int MAX_PARTITION_BITS = 12;
+	private static final int ENTRY_SIZE = 16;
+	private static final int SPILL_BYTES = 1 << 22;
+	private static final int READ_BUFFER = 1 << 20;
+	private static final int MERGE_BUFFER = 1 << 16;
+
+	interface Sink {
+		void accept(long key, long value) throws IOException;
+	}
+
+	// one game, with the cursor at its first move and the match at its start
+	interface GameVisitor {
+		void visit(long game, GameCursor cursor, ChessMatch match, Sink out) throws IOException;
+	}
+
+	private final Path base;
+	private final int partitionBits;
+	private final FileChannel[] partitions;
+
+	// expected is the number of pairs that will be added, it only sets the number of partitions
+	ExternalSort(Path base, long expected) throws IOException {
+		int bits = 0;
+		while ((expected >>> bits) > PARTITION_ENTRIES && bits < MAX_PARTITION_BITS) {
+			bits++;
+		}
+		this.base = base;
+		partitionBits = bits;
+		partitions = new FileChannel[1 << bits];
+		try {
+			for (int i = 0; i < partitions.length; i++) {
+				partitions[i] = FileChannel.open(base.resolveSibling(base.getFileName() + ".part" + i),
+						StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+						StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	// splits the games between the threads, each replays its share with the visitor into its own spill buffers
+	void addGames(GameDatabase database, int threads, GameVisitor visitor) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			long games = database.getGameCount();
+			List<Future<Void>> futures = new ArrayList<>(threads);
+			for (int t = 0; t < threads; t++) {
+				long first = games * t / threads;
+				long last = games * (t + 1) / threads;
+				futures.add(pool.submit(() -> {
+					Spill spill = new Spill();
+					if (first < last) {
+						GameCursor cursor = database.cursor(first);
+						for (long game = first; game < last; game++) {
+							cursor.seek(game);
+							visitor.visit(game, cursor, cursor.newMatch(), spill);
+						}
+					}
+					spill.flush();
+					return null;
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Sorting was interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	// every pair added, in order
+	void drain(Sink sink) throws IOException {
+		for (FileChannel partition : partitions) {
+			long size = partition.size() / ENTRY_SIZE;
+			if (size > 2 * PARTITION_ENTRIES) {
+				merge(partition, size, sink);
+				continue;
+			}
+			int n = (int) size;
+			long[] keys = new long[n];
+			long[] values = new long[n];
+			read(partition, 0, keys, values, n);
+			sort(keys, values, n);
+			for (int i = 0; i < n; i++) {
+				sink.accept(keys[i], values[i]);
+			}
+		}
+	}
+
+	// a partition too large to sort in memory: sorted runs of PARTITION_ENTRIES pairs, merged through a heap
+	private void merge(FileChannel partition, long size, Sink sink) throws IOException {
+		Path path = base.resolveSibling(base.getFileName() + ".runs");
+		try (FileChannel runs = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+			int count = (int) ((size + PARTITION_ENTRIES - 1) / PARTITION_ENTRIES);
+			sortRuns(partition, runs, size, count);
+			Run[] heap = new Run[count];
+			int live = 0;
+			for (int r = 0; r < count; r++) {
+				long position = (long) r * PARTITION_ENTRIES * ENTRY_SIZE;
+				Run run = new Run(runs, position, Math.min(position + (long) PARTITION_ENTRIES * ENTRY_SIZE,
+						size * ENTRY_SIZE));
+				if (run.next())
+					heap[live++] = run;
+			}
+			for (int i = live / 2 - 1; i >= 0; i--) {
+				siftDown(heap, i, live);
+			}
+			while (live > 0) {
+				Run top = heap[0];
+				sink.accept(top.key, top.value);
+				if (!top.next())
+					heap[0] = heap[--live];
+				siftDown(heap, 0, live);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (FileChannel partition : partitions) {
+			if (partition != null)
+				partition.close();
+		}
+	}
+
+	// buffers of one thread, a buffer per partition keeps the writes large
+	private final class Spill implements Sink {
+		private final ByteBuffer[] buffers = new ByteBuffer[partitions.length];
+
+		Spill() {
+			int size = Math.max(ENTRY_SIZE * 64, SPILL_BYTES / partitions.length);
+			for (int i = 0; i < buffers.length; i++) {
+				buffers[i] = ByteBuffer.allocate(size);
+			}
+		}
+
+		@Override
+		public void accept(long key, long value) throws IOException {
+			int partition = (int) slot(key, partitionBits);
+			ByteBuffer buffer = buffers[partition];
+			if (!buffer.hasRemaining())
+				write(buffer, partitions[partition]);
+			buffer.putLong(key).putLong(value);
+		}
+
+		void flush() throws IOException {
+			for (int i = 0; i < buffers.length; i++) {
+				write(buffers[i], partitions[i]);
+			}
+		}
+
+		private void write(ByteBuffer buffer, FileChannel partition) throws IOException {
+			buffer.flip();
+			synchronized (partition) {
+				while (buffer.hasRemaining()) {
+					partition.write(buffer);
+				}
+			}
+			buffer.clear();
+		}
+	}
+
+	// the top bits of the key, so slots follow the unsigned order of the keys
+	static long slot(long key, int bits) {
+		return (bits == 0) ? 0 : key >>> (64 - bits);
+	}
+
+	// n pairs from the byte position of the file
+	private static void read(FileChannel partition, long position, long[] keys, long[] values, int n)
+			throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER);
+		int i = 0;
+		while (i < n) {
+			int read = partition.read(buffer, position);
+			if (read < 0)
+				throw new IOException("Partition file is shorter than expected");
+			position += read;
+			buffer.flip();
+			while (buffer.remaining() >= ENTRY_SIZE && i < n) {
+				keys[i] = buffer.getLong();
+				values[i] = buffer.getLong();
+				i++;
+			}
+			buffer.compact();
+		}
+	}
+
+	// each run at the same place in the runs file as in the partition
+	private static void sortRuns(FileChannel partition, FileChannel runs, long size, int count) throws IOException {
+		long[] keys = new long[PARTITION_ENTRIES];
+		long[] values = new long[PARTITION_ENTRIES];
+		ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER);
+		for (int r = 0; r < count; r++) {
+			long position = (long) r * PARTITION_ENTRIES * ENTRY_SIZE;
+			int n = (int) Math.min(PARTITION_ENTRIES, size - (long) r * PARTITION_ENTRIES);
+			read(partition, position, keys, values, n);
+			sort(keys, values, n);
+			write(runs, position, keys, values, n, buffer);
+		}
+	}
+
+	private static void write(FileChannel file, long position, long[] keys, long[] values, int n, ByteBuffer buffer)
+			throws IOException {
+		buffer.clear();
+		for (int i = 0; i < n; i++) {
+			if (buffer.remaining() < ENTRY_SIZE) {
+				position += flush(file, position, buffer);
+			}
+			buffer.putLong(keys[i]).putLong(values[i]);
+		}
+		flush(file, position, buffer);
+	}
+
+	private static int flush(FileChannel file, long position, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		int written = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			file.write(buffer, position + buffer.position());
+		}
+		buffer.clear();
+		return written;
+	}
+
+	// moves the run at i down until no run below it has a smaller pair
+	private static void siftDown(Run[] heap, int i, int n) {
+		Run run = heap[i];
+		while (2 * i + 1 < n) {
+			int child = 2 * i + 1;
+			if (child + 1 < n && heap[child + 1].compareTo(heap[child]) < 0)
+				child++;
+			if (heap[child].compareTo(run) >= 0)
+				break;
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = run;
+	}
+
+	// LSD radix sort on 16 bit digits of the first n pairs, values first and keys last so equal keys stay in value
+	// order
+	private static void sort(long[] keys, long[] values, int n) {
+		long[] keys2 = new long[n];
+		long[] values2 = new long[n];
+		long[] k = keys;
+		long[] v = values;
+		int[] count = new int[(1 << 16) + 1];
+		for (int pass = 0; pass < 8; pass++) {
+			long[] digits = (pass < 4) ? v : k;
+			int shift = (pass & 3) * 16;
+			Arrays.fill(count, 0);
+			for (int i = 0; i < n; i++) {
+				count[(int) ((digits[i] >>> shift) & 0xFFFF) + 1]++;
+			}
+			// nothing to do when every entry has the same digit
+			if (n == 0 || count[(int) ((digits[0] >>> shift) & 0xFFFF) + 1] == n)
+				continue;
+			for (int i = 1; i < count.length; i++) {
+				count[i] += count[i - 1];
+			}
+			for (int i = 0; i < n; i++) {
+				int to = count[(int) ((digits[i] >>> shift) & 0xFFFF)]++;
+				keys2[to] = k[i];
+				values2[to] = v[i];
+			}
+			long[] t = k;
+			k = keys2;
+			keys2 = t;
+			t = v;
+			v = values2;
+			values2 = t;
+		}
+		if (k != keys) {
+			System.arraycopy(k, 0, keys, 0, n);
+			System.arraycopy(v, 0, values, 0, n);
+		}
+	}
+
+	// one sorted run of the runs file, read a buffer at a time
+	private static final class Run implements Comparable<Run> {
+		private final FileChannel file;
+		private final ByteBuffer buffer = ByteBuffer.allocate(MERGE_BUFFER);
+		private final long end;
+		private long position;
+		long key;
+		long value;
+
+		Run(FileChannel file, long position, long end) {
+			this.file = file;
+			this.position = position;
+			this.end = end;
+			buffer.limit(0);
+		}
+
+		// moves to the next pair, false at the end of the run
+		boolean next() throws IOException {
+			if (!buffer.hasRemaining()) {
+				if (position >= end)
+					return false;
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), end - position));
+				while (buffer.hasRemaining()) {
+					if (file.read(buffer, position + buffer.position()) < 0)
+						throw new IOException("Run file is shorter than expected");
+				}
+				position += buffer.limit();
+				buffer.flip();
+			}
+			key = buffer.getLong();
+			value = buffer.getLong();
+			return true;
+		}
+
+		@Override
+		public int compareTo(Run other) {
+			int c = Long.compareUnsigned(key, other.key);
+			return (c != 0) ? c : Long.compareUnsigned(value, other.value);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package chess.db;
+
+import java.nio.ByteBuffer;
+
+import chess.ChessMatch;
+import chess.ChessSnapshot;
+
+/*
+ * Position inside one game of a GameDatabase. Moves are read one short at a
+ * time from the mapped file and handed out as plain ints, so replaying a
+ * game creates no object per move:
+ *
+ *   ChessMatch match = cursor.newMatch();
+ *   while (cursor.hasNext())
+ *       match.makeMove(cursor.next());
+ */
+public class GameCursor {
+	private final GameDatabase database;
+	private ByteBuffer segment;
+	private int moves;
+	private int plies;
+	private int ply;
+	private long game;
+
+	GameCursor(GameDatabase database) {
+		this.database = database;
+	}
+
+	// moves the cursor to the first ply of another game
+	public void seek(long game) {
+		long offset = database.offset(game);
+		segment = database.segment(offset);
+		int index = GameDatabase.index(offset);
+		plies = segment.getShort(index + 2) & 0xFFFF;
+		moves = GameDatabase.movesIndex(segment, index);
+		ply = 0;
+		this.game = game;
+	}
+
+	public long getGame() {
+		return game;
+	}
+
+	public int getPlyCount() {
+		return plies;
+	}
+
+	// number of moves already returned by next()
+	public int getPly() {
+		return ply;
+	}
+
+	public boolean hasNext() {
+		return ply < plies;
+	}
+
+	public int next() {
+		return getMove(ply++);
+	}
+
+	public int getMove(int ply) {
+		if (ply < 0 || ply >= plies)
+			throw new IndexOutOfBoundsException("Ply " + ply + " of " + plies);
+		return segment.getShort(moves + 2 * ply) & 0xFFFF;
+	}
+
+	// a match at the start of the game
+	public ChessMatch newMatch() {
+		ChessSnapshot start = database.getStartPosition(game);
+		return (start == null) ? new ChessMatch() : new ChessMatch(start);
+	}
+}
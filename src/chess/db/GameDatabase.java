@@ -0,0 +1,126 @@
+package chess.db;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import chess.ChessSnapshot;
+
+/*
+ * Read-only view of a game database file, memory-mapped with
+ * FileChannel.map. The layout, all big-endian:
+ *
+ *   header  magic "CHESSDB1", int version, int 0, long game count, long index offset
+ *   games   byte result, byte flags, unsigned short ply count,
+ *           a ChessSnapshot if the game does not start from the initial position,
+ *           then one short per ply in the chess.Move format
+ *   index   one long per game: the offset of its record
+ *
+ * The file is mapped in segments (see MappedFile); the writer pads so no
+ * record or index entry crosses a segment boundary. Every accessor reads
+ * straight from the mapping, nothing is copied or decoded ahead of time.
+ */
+public class GameDatabase implements Closeable {
+	static final long MAGIC = 0x4348455353444231L;
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 32;
+	static final int RECORD_HEADER_SIZE = 4;
+	static final int FLAG_START_POSITION = 1;
+	static final int MAX_PLIES = 0xFFFF;
+	static final String[] RESULTS = { "*", "1-0", "0-1", "1/2-1/2" };
+
+	private final MappedFile file;
+	private final long games;
+	private final long indexOffset;
+
+	private GameDatabase(MappedFile file) throws IOException {
+		this.file = file;
+		if (file.size() < HEADER_SIZE || file.getLong(0) != MAGIC)
+			throw new IOException("Not a game database");
+		if (file.getInt(8) != VERSION)
+			throw new IOException("Unsupported game database version " + file.getInt(8));
+		games = file.getLong(16);
+		indexOffset = file.getLong(24);
+		if (indexOffset + games * Long.BYTES > file.size())
+			throw new IOException("Game database is truncated");
+	}
+
+	public static GameDatabase open(Path path) throws IOException {
+		MappedFile file = MappedFile.open(path);
+		try {
+			return new GameDatabase(file);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	public long getGameCount() {
+		return games;
+	}
+
+	// "1-0", "0-1", "1/2-1/2" or "*"
+	public String getResult(long game) {
+		long offset = offset(game);
+		return RESULTS[segment(offset).get(index(offset)) & 3];
+	}
+
+	public int getPlyCount(long game) {
+		long offset = offset(game);
+		return segment(offset).getShort(index(offset) + 2) & 0xFFFF;
+	}
+
+	// position the game starts from, or null for the initial position
+	public ChessSnapshot getStartPosition(long game) {
+		long offset = offset(game);
+		ByteBuffer segment = segment(offset);
+		int index = index(offset);
+		if ((segment.get(index + 1) & FLAG_START_POSITION) == 0)
+			return null;
+		return ChessSnapshot.read(segment, index + RECORD_HEADER_SIZE);
+	}
+
+	// the move at the given ply, packed as described in chess.Move
+	public int getMove(long game, int ply) {
+		long offset = offset(game);
+		ByteBuffer segment = segment(offset);
+		int index = index(offset);
+		int plies = segment.getShort(index + 2) & 0xFFFF;
+		if (ply < 0 || ply >= plies)
+			throw new IndexOutOfBoundsException("Ply " + ply + " of " + plies);
+		return segment.getShort(movesIndex(segment, index) + 2 * ply) & 0xFFFF;
+	}
+
+	// a cursor on the given game; reuse one with GameCursor.seek to scan without allocating per game
+	public GameCursor cursor(long game) {
+		GameCursor cursor = new GameCursor(this);
+		cursor.seek(game);
+		return cursor;
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	long offset(long game) {
+		if (game < 0 || game >= games)
+			throw new IndexOutOfBoundsException("Game " + game + " of " + games);
+		return file.getLong(indexOffset + game * Long.BYTES);
+	}
+
+	ByteBuffer segment(long offset) {
+		return file.segment(offset);
+	}
+
+	// where the moves of the record at index start
+	static int movesIndex(ByteBuffer segment, int index) {
+		boolean startPosition = (segment.get(index + 1) & FLAG_START_POSITION) != 0;
+		return index + RECORD_HEADER_SIZE + (startPosition ? ChessSnapshot.BYTES : 0);
+	}
+
+	static int index(long offset) {
+		return MappedFile.index(offset);
+	}
+}
@@ -0,0 +1,195 @@
+package chess.db;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import chess.ChessException;
+import chess.ChessMatch;
+import chess.ChessSnapshot;
+import chess.San;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnReader;
+
+/*
+ * Appends games to a new game database file (see GameDatabase for the
+ * layout). Records go out through one reusable buffer; the index is
+ * spooled to a temporary file next to the database and appended by
+ * close(), which also fills in the header. Nothing per game stays in
+ * memory, so the number of games is only limited by the disk.
+ */
+public class GameDatabaseWriter implements Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final ChessSnapshot INITIAL_POSITION = new ChessMatch().snapshot();
+
+	private final FileChannel channel;
+	private final FileChannel index;
+	private final Path indexPath;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final ByteBuffer indexBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private long offset;
+	private long games;
+
+	public GameDatabaseWriter(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE, StandardOpenOption.READ);
+		indexPath = path.resolveSibling(path.getFileName() + ".index");
+		index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+		// the header is written for real by close()
+		buffer.put(new byte[GameDatabase.HEADER_SIZE]);
+		offset = GameDatabase.HEADER_SIZE;
+	}
+
+	// the game played in the match, from its initial position; result is a PGN result token
+	public long add(ChessMatch match, String result) throws IOException {
+		ChessSnapshot start = match.getInitialPosition();
+		int[] moves = match.getMoveHistory();
+		return add(start.equals(INITIAL_POSITION) ? null : start, moves, moves.length, result);
+	}
+
+	// the first count moves, packed as described in chess.Move; start is null for the initial position.
+	// Returns the number of the game
+	public long add(ChessSnapshot start, int[] moves, int count, String result) throws IOException {
+		if (count > GameDatabase.MAX_PLIES)
+			throw new IllegalArgumentException("A game can have at most " + GameDatabase.MAX_PLIES + " plies");
+		int code = resultCode(result);
+		int size = GameDatabase.RECORD_HEADER_SIZE + (start != null ? ChessSnapshot.BYTES : 0) + 2 * count;
+		// a record never crosses into the next mapped segment
+		long room = MappedFile.room(offset);
+		if (size > room)
+			pad(room);
+
+		putIndex(offset);
+		ensureRoom(GameDatabase.RECORD_HEADER_SIZE + ChessSnapshot.BYTES);
+		buffer.put((byte) code);
+		buffer.put((byte) (start != null ? GameDatabase.FLAG_START_POSITION : 0));
+		buffer.putShort((short) count);
+		if (start != null)
+			start.write(buffer);
+		for (int i = 0; i < count; i++) {
+			ensureRoom(2);
+			buffer.putShort((short) moves[i]);
+		}
+		offset += size;
+		return games++;
+	}
+
+	public long getGameCount() {
+		return games;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			// index entries are longs at a multiple of 8, so none of them crosses a segment either
+			pad((8 - (offset & 7)) & 7);
+			flush();
+			long indexOffset = offset;
+			indexBuffer.flip();
+			while (indexBuffer.hasRemaining()) {
+				index.write(indexBuffer);
+			}
+			long position = 0;
+			long size = index.size();
+			while (position < size) {
+				position += index.transferTo(position, size - position, channel);
+			}
+			ByteBuffer header = ByteBuffer.allocate(GameDatabase.HEADER_SIZE);
+			header.putLong(GameDatabase.MAGIC).putInt(GameDatabase.VERSION).putInt(0).putLong(games)
+					.putLong(indexOffset);
+			header.flip();
+			channel.write(header, 0);
+		} finally {
+			index.close();
+			channel.close();
+		}
+	}
+
+	private void putIndex(long recordOffset) throws IOException {
+		if (indexBuffer.remaining() < Long.BYTES) {
+			indexBuffer.flip();
+			while (indexBuffer.hasRemaining()) {
+				index.write(indexBuffer);
+			}
+			indexBuffer.clear();
+		}
+		indexBuffer.putLong(recordOffset);
+	}
+
+	private void pad(long bytes) throws IOException {
+		for (long i = 0; i < bytes; i++) {
+			ensureRoom(1);
+			buffer.put((byte) 0);
+		}
+		offset += bytes;
+	}
+
+	private void ensureRoom(int bytes) throws IOException {
+		if (buffer.remaining() < bytes)
+			flush();
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static int resultCode(String result) {
+		for (int i = 0; i < GameDatabase.RESULTS.length; i++) {
+			if (GameDatabase.RESULTS[i].equals(result))
+				return i;
+		}
+		throw new IllegalArgumentException("Unknown result " + result);
+	}
+
+	// java chess.db.GameDatabaseWriter games.pgn games.db: converts a PGN file, skipping games with illegal moves
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: GameDatabaseWriter <file.pgn> <file.db>");
+			System.exit(2);
+		}
+		long start = System.nanoTime();
+		long written;
+		long skipped = 0;
+		int[] moves = new int[GameDatabase.MAX_PLIES];
+		try (PgnReader reader = new PgnReader(
+				new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.ISO_8859_1));
+				GameDatabaseWriter writer = new GameDatabaseWriter(Paths.get(args[1]))) {
+			PgnGame game;
+			while ((game = reader.next()) != null) {
+				if (game.getError() != null || game.getMoves().size() > moves.length) {
+					skipped++;
+					continue;
+				}
+				try {
+					String fen = game.getTag("FEN");
+					ChessMatch match = (fen != null) ? ChessMatch.fromFen(fen) : new ChessMatch();
+					int plies = 0;
+					for (String san : game.getMoves()) {
+						int move = San.parse(match, san);
+						match.makeMove(move);
+						moves[plies++] = move;
+					}
+					writer.add((fen != null) ? match.getInitialPosition() : null, moves, plies, game.getResult());
+				} catch (ChessException e) {
+					skipped++;
+				}
+			}
+			written = writer.getGameCount();
+		}
+		System.out.printf("%,d games written, %,d skipped in %,d ms, %,d bytes%n", written, skipped,
+				(System.nanoTime() - start) / 1_000_000, Files.size(Paths.get(args[1])));
+	}
+}
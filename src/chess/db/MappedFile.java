@@ -0,0 +1,78 @@
+package chess.db;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * A read-only file mapped in segments of SEGMENT_SIZE bytes, since one
+ * mapping cannot exceed 2 GB. Values must not cross a segment boundary; the
+ * writers of the database files pad their data to make sure of it.
+ */
+final class MappedFile implements Closeable {
+	static final int SEGMENT_BITS = 30;
+	static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer[] segments;
+	private final long size;
+
+	private MappedFile(FileChannel channel) throws IOException {
+		this.channel = channel;
+		size = channel.size();
+		segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+		for (int i = 0; i < segments.length; i++) {
+			long start = (long) i << SEGMENT_BITS;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+		}
+	}
+
+	static MappedFile open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new MappedFile(channel);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	long size() {
+		return size;
+	}
+
+	// the segment holding offset; read it at index(offset)
+	ByteBuffer segment(long offset) {
+		return segments[(int) (offset >>> SEGMENT_BITS)];
+	}
+
+	static int index(long offset) {
+		return (int) (offset & (SEGMENT_SIZE - 1));
+	}
+
+	// bytes left in the segment from offset on
+	static long room(long offset) {
+		return SEGMENT_SIZE - index(offset);
+	}
+
+	long getLong(long offset) {
+		return segment(offset).getLong(index(offset));
+	}
+
+	byte get(long offset) {
+		return segment(offset).get(index(offset));
+	}
+
+	int getInt(long offset) {
+		return segment(offset).getInt(index(offset));
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
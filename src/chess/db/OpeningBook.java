@@ -0,0 +1,132 @@
+package chess.db;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import chess.ChessMatch;
+
+/*
+ * Memory-mapped opening book, built by OpeningBookBuilder. The file is a
+ * header followed by (key, move, weight, count) entries sorted by key as an
+ * unsigned number:
+ *
+ *   header   magic "CHESSBK1", int version, int 0, long entry count, long entries offset
+ *   entries  long key, short move, unsigned short weight, int count
+ *
+ * Opening only maps the file and a probe is a binary search touching a few
+ * pages, so a book of any size is ready in milliseconds. Moves are checked
+ * against the legal moves of the match, which also guards against two
+ * positions sharing a key.
+ */
+public class OpeningBook implements Closeable {
+	public static final int MAX_WEIGHT = 0xFFFF;
+	static final long MAGIC = 0x4348455353424B31L;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	static final int ENTRY_SIZE = 16;
+
+	private final MappedFile file;
+	private final long entries;
+	private final long entriesOffset;
+
+	private OpeningBook(MappedFile file) throws IOException {
+		this.file = file;
+		if (file.size() < HEADER_SIZE || file.getLong(0) != MAGIC)
+			throw new IOException("Not an opening book");
+		if (file.getInt(8) != VERSION)
+			throw new IOException("Unsupported opening book version " + file.getInt(8));
+		entries = file.getLong(16);
+		entriesOffset = file.getLong(24);
+		if (entriesOffset + entries * ENTRY_SIZE > file.size())
+			throw new IOException("Opening book is truncated");
+	}
+
+	public static OpeningBook open(Path path) throws IOException {
+		MappedFile file = MappedFile.open(path);
+		try {
+			return new OpeningBook(file);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	public long getEntryCount() {
+		return entries;
+	}
+
+	// the book moves that are legal in the match, most played first
+	public List<BookEntry> probe(ChessMatch match) {
+		long key = match.getPositionKey();
+		List<BookEntry> found = new ArrayList<>();
+		int[] legal = match.legalMoves();
+		for (long entry = lowerBound(key); entry < entries && keyAt(entry) == key; entry++) {
+			long offset = entriesOffset + entry * ENTRY_SIZE;
+			int move = file.segment(offset).getShort(MappedFile.index(offset) + 8) & 0xFFFF;
+			if (!contains(legal, move))
+				continue;
+			int weight = file.segment(offset).getShort(MappedFile.index(offset) + 10) & 0xFFFF;
+			found.add(new BookEntry(move, file.getInt(offset + 12), weight));
+		}
+		found.sort((a, b) -> Integer.compare(b.getCount(), a.getCount()));
+		return found;
+	}
+
+	// the most played book move, or -1 when the position is not in the book
+	public int bestMove(ChessMatch match) {
+		List<BookEntry> moves = probe(match);
+		return moves.isEmpty() ? -1 : moves.get(0).getMove();
+	}
+
+	// a book move chosen with probability proportional to how often it was played, or -1
+	public int pickMove(ChessMatch match, Random random) {
+		List<BookEntry> moves = probe(match);
+		long total = 0;
+		for (BookEntry entry : moves) {
+			total += entry.getCount();
+		}
+		if (total == 0)
+			return -1;
+		long pick = (long) (random.nextDouble() * total);
+		for (BookEntry entry : moves) {
+			pick -= entry.getCount();
+			if (pick < 0)
+				return entry.getMove();
+		}
+		return moves.get(moves.size() - 1).getMove();
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	private long lowerBound(long key) {
+		long low = 0;
+		long high = entries;
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			if (Long.compareUnsigned(keyAt(mid), key) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private long keyAt(long entry) {
+		return file.getLong(entriesOffset + entry * ENTRY_SIZE);
+	}
+
+	private static boolean contains(int[] moves, int move) {
+		for (int m : moves) {
+			if (m == move)
+				return true;
+		}
+		return false;
+	}
+}
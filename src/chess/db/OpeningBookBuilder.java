@@ -0,0 +1,143 @@
+package chess.db;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import chess.ChessMatch;
+import chess.Color;
+
+/*
+ * Builds an OpeningBook from the first plies of every game of a
+ * GameDatabase. Each position reached in the opening adds a (key, move and
+ * points) pair to an ExternalSort; the sorted pairs come back grouped by
+ * position and move, so each group is counted and written as one entry.
+ * Moves played in fewer than minCount games are left out.
+ */
+public class OpeningBookBuilder {
+	private static final int WRITE_BUFFER = 1 << 20;
+
+	private final int threads;
+	private final int maxPly;
+	private final int minCount;
+
+	public OpeningBookBuilder(int threads, int maxPly, int minCount) {
+		if (threads < 1)
+			throw new IllegalArgumentException("At least one thread is required");
+		this.threads = threads;
+		this.maxPly = maxPly;
+		this.minCount = Math.max(minCount, 1);
+	}
+
+	// returns the number of entries written
+	public long build(GameDatabase database, Path output) throws IOException {
+		long expected = 0;
+		for (long game = 0; game < database.getGameCount(); game++) {
+			expected += Math.min(database.getPlyCount(game), maxPly);
+		}
+		try (ExternalSort sort = new ExternalSort(output, expected);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			sort.addGames(database, threads, (game, cursor, match, sink) -> {
+				String result = database.getResult(game);
+				// points of white: 2 for a win, 1 for a draw or an unfinished game
+				int white = result.equals("1-0") ? 2 : result.equals("0-1") ? 0 : 1;
+				while (cursor.hasNext() && cursor.getPly() < maxPly) {
+					int move = cursor.next();
+					int points = (match.getCurrentPlayer() == Color.WHITE) ? white : 2 - white;
+					sink.accept(match.getPositionKey(), ((long) move << 2) | points);
+					match.makeMove(move);
+				}
+			});
+			EntryWriter entries = new EntryWriter(out, minCount);
+			sort.drain(entries);
+			entries.finish();
+
+			ByteBuffer header = ByteBuffer.allocate(OpeningBook.HEADER_SIZE);
+			header.putLong(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putInt(0).putLong(entries.count)
+					.putLong(OpeningBook.HEADER_SIZE);
+			header.flip();
+			while (header.hasRemaining()) {
+				out.write(header, header.position());
+			}
+			return entries.count;
+		}
+	}
+
+	// counts the pairs of each (key, move) group and appends one entry per group
+	private static final class EntryWriter implements ExternalSort.Sink {
+		private final FileChannel out;
+		private final int minCount;
+		private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+		private long position = OpeningBook.HEADER_SIZE;
+		private long count;
+		private long key;
+		private int move = -1;
+		private int games;
+		private long points;
+
+		EntryWriter(FileChannel out, int minCount) {
+			this.out = out;
+			this.minCount = minCount;
+		}
+
+		@Override
+		public void accept(long key, long value) throws IOException {
+			int move = (int) (value >>> 2);
+			if (key != this.key || move != this.move) {
+				emit();
+				this.key = key;
+				this.move = move;
+				games = 0;
+				points = 0;
+			}
+			games++;
+			points += value & 3;
+		}
+
+		void finish() throws IOException {
+			emit();
+			flush();
+		}
+
+		private void emit() throws IOException {
+			if (move < 0 || games < minCount)
+				return;
+			if (!buffer.hasRemaining())
+				flush();
+			buffer.putLong(key).putShort((short) move);
+			buffer.putShort((short) (points * OpeningBook.MAX_WEIGHT / (2L * games))).putInt(games);
+			count++;
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				position += out.write(buffer, position);
+			}
+			buffer.clear();
+		}
+	}
+
+	// java chess.db.OpeningBookBuilder games.db book.bin [plies] [min games]
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || args.length > 4) {
+			System.err.println("Usage: OpeningBookBuilder <games.db> <book.bin> [plies] [min games]");
+			System.exit(2);
+		}
+		int plies = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+		int minCount = (args.length > 3) ? Integer.parseInt(args[3]) : 2;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long start = System.nanoTime();
+		long entries;
+		try (GameDatabase database = GameDatabase.open(Paths.get(args[0]))) {
+			entries = new OpeningBookBuilder(threads, plies, minCount).build(database, Paths.get(args[1]));
+		}
+		System.out.printf("%,d book entries in %,d ms, %,d bytes%n", entries,
+				(System.nanoTime() - start) / 1_000_000, Files.size(Paths.get(args[1])));
+	}
+}
@@ -0,0 +1,134 @@
+package chess.db;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import chess.ChessMatch;
+
+/*
+ * Memory-mapped index from position keys (ChessMatch.getPositionKey) to the
+ * games and plies where the position occurs, built by PositionIndexer. The
+ * file holds every (key, game, ply) entry sorted by key, as unsigned
+ * numbers, and a directory of 2^bits + 1 entry numbers addressed by the top
+ * bits of the key. A lookup reads one directory slot, binary searches the
+ * entries it points to for both ends of the key's run and reads the matches
+ * off the mapping.
+ *
+ *   header     magic "CHESSPI1", int version, int directory bits, long entry count,
+ *              long directory offset, long entries offset
+ *   directory  (2^bits + 1) longs: number of the first entry of each slot
+ *   entries    long key, long hit (game << 16 | ply)
+ */
+public class PositionIndex implements Closeable {
+	static final long MAGIC = 0x4348455353504931L;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+	static final int ENTRY_SIZE = 16;
+	private static final long[] NO_HITS = new long[0];
+
+	private final MappedFile file;
+	private final int bits;
+	private final long entries;
+	private final long directoryOffset;
+	private final long entriesOffset;
+
+	private PositionIndex(MappedFile file) throws IOException {
+		this.file = file;
+		if (file.size() < HEADER_SIZE || file.getLong(0) != MAGIC)
+			throw new IOException("Not a position index");
+		if (file.getInt(8) != VERSION)
+			throw new IOException("Unsupported position index version " + file.getInt(8));
+		bits = file.getInt(12);
+		entries = file.getLong(16);
+		directoryOffset = file.getLong(24);
+		entriesOffset = file.getLong(32);
+		if (entriesOffset + entries * ENTRY_SIZE > file.size())
+			throw new IOException("Position index is truncated");
+	}
+
+	public static PositionIndex open(Path path) throws IOException {
+		MappedFile file = MappedFile.open(path);
+		try {
+			return new PositionIndex(file);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	public static long hit(long game, int ply) {
+		return (game << 16) | ply;
+	}
+
+	public static long game(long hit) {
+		return hit >>> 16;
+	}
+
+	// number of moves played from the start of the game to reach the position
+	public static int ply(long hit) {
+		return (int) (hit & 0xFFFF);
+	}
+
+	public long getEntryCount() {
+		return entries;
+	}
+
+	public long[] find(ChessMatch match) {
+		return find(match.getPositionKey());
+	}
+
+	// every occurrence of the position, ordered by game and ply; decode them with game(hit) and ply(hit)
+	public long[] find(long key) {
+		long first = lowerBound(key);
+		long last = upperBound(key);
+		if (last == first)
+			return NO_HITS;
+		long[] hits = new long[(int) (last - first)];
+		for (int i = 0; i < hits.length; i++) {
+			hits[i] = file.getLong(entriesOffset + (first + i) * ENTRY_SIZE + 8);
+		}
+		Arrays.sort(hits);
+		return hits;
+	}
+
+	public long count(long key) {
+		return upperBound(key) - lowerBound(key);
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	// first entry whose key is not below key
+	private long lowerBound(long key) {
+		return search(key, false);
+	}
+
+	// first entry whose key is above key, the end of the run lowerBound starts
+	private long upperBound(long key) {
+		return search(key, true);
+	}
+
+	// binary search of the directory slot of the key, which holds the whole run of the key
+	private long search(long key, boolean above) {
+		long slot = ExternalSort.slot(key, bits);
+		long low = file.getLong(directoryOffset + slot * Long.BYTES);
+		long high = file.getLong(directoryOffset + (slot + 1) * Long.BYTES);
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			int c = Long.compareUnsigned(keyAt(mid), key);
+			if (c < 0 || (above && c == 0))
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private long keyAt(long entry) {
+		return file.getLong(entriesOffset + entry * ENTRY_SIZE);
+	}
+}
@@ -0,0 +1,145 @@
+package chess.db;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Builds a PositionIndex from a GameDatabase. The games are split between
+ * the threads, which replay them and add a (key, hit) pair for every
+ * position to an ExternalSort; the sorted pairs are then written out with
+ * the directory filled in as they go. Only one partition of the sort is in
+ * memory at a time, so the number of entries is not limited by the heap.
+ */
+public class PositionIndexer {
+	private static final int MAX_DIRECTORY_BITS = 24;
+	private static final int WRITE_BUFFER = 1 << 20;
+
+	private final int threads;
+
+	public PositionIndexer(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("At least one thread is required");
+		this.threads = threads;
+	}
+
+	// writes the index of every position of every game, the start positions included; returns the entry count
+	public long build(GameDatabase database, Path output) throws IOException {
+		long total = 0;
+		for (long game = 0; game < database.getGameCount(); game++) {
+			total += database.getPlyCount(game) + 1;
+		}
+		int directoryBits = Math.min(63 - Long.numberOfLeadingZeros(Math.max(total / 8, 1)), MAX_DIRECTORY_BITS);
+		try (ExternalSort sort = new ExternalSort(output, total)) {
+			sort.addGames(database, threads, (game, cursor, match, out) -> {
+				while (true) {
+					out.accept(match.getPositionKey(), PositionIndex.hit(game, cursor.getPly()));
+					if (!cursor.hasNext())
+						break;
+					match.makeMove(cursor.next());
+				}
+			});
+			return write(sort, output, total, directoryBits);
+		}
+	}
+
+	private static long write(ExternalSort sort, Path output, long total, int directoryBits) throws IOException {
+		long directoryOffset = PositionIndex.HEADER_SIZE;
+		long directorySize = ((1L << directoryBits) + 1) * Long.BYTES;
+		// entries are aligned to their size, so none of them crosses a MappedFile segment
+		long entriesOffset = (directoryOffset + directorySize + PositionIndex.ENTRY_SIZE - 1)
+				& -PositionIndex.ENTRY_SIZE;
+
+		try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			EntryWriter entries = new EntryWriter(out, entriesOffset, directoryBits);
+			sort.drain(entries);
+			long[] directory = entries.finish();
+			if (entries.count != total)
+				throw new IOException("Expected " + total + " entries but found " + entries.count);
+
+			ByteBuffer buffer = entries.buffer;
+			long position = directoryOffset;
+			for (long first : directory) {
+				if (!buffer.hasRemaining())
+					position += write(out, buffer, position);
+				buffer.putLong(first);
+			}
+			write(out, buffer, position);
+
+			buffer.putLong(PositionIndex.MAGIC).putInt(PositionIndex.VERSION).putInt(directoryBits);
+			buffer.putLong(total).putLong(directoryOffset).putLong(entriesOffset);
+			write(out, buffer, 0);
+		}
+		return total;
+	}
+
+	// appends the sorted entries and notes where each directory slot starts
+	private static final class EntryWriter implements ExternalSort.Sink {
+		private final FileChannel out;
+		private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+		private final long[] directory;
+		private final int directoryBits;
+		private long position;
+		private long count;
+		private int nextSlot;
+
+		EntryWriter(FileChannel out, long position, int directoryBits) {
+			this.out = out;
+			this.position = position;
+			this.directoryBits = directoryBits;
+			directory = new long[(1 << directoryBits) + 1];
+		}
+
+		@Override
+		public void accept(long key, long hit) throws IOException {
+			long slot = ExternalSort.slot(key, directoryBits);
+			while (nextSlot <= slot) {
+				directory[nextSlot++] = count;
+			}
+			if (!buffer.hasRemaining())
+				position += write(out, buffer, position);
+			buffer.putLong(key).putLong(hit);
+			count++;
+		}
+
+		long[] finish() throws IOException {
+			write(out, buffer, position);
+			while (nextSlot < directory.length) {
+				directory[nextSlot++] = count;
+			}
+			return directory;
+		}
+	}
+
+	// writes the buffer at the given position and returns the number of bytes written
+	private static long write(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+		buffer.flip();
+		long written = 0;
+		while (buffer.hasRemaining()) {
+			written += out.write(buffer, position + written);
+		}
+		buffer.clear();
+		return written;
+	}
+
+	// java chess.db.PositionIndexer games.db positions.idx [threads]
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || args.length > 3) {
+			System.err.println("Usage: PositionIndexer <games.db> <positions.idx> [threads]");
+			System.exit(2);
+		}
+		int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long start = System.nanoTime();
+		long entries;
+		try (GameDatabase database = GameDatabase.open(Paths.get(args[0]))) {
+			entries = new PositionIndexer(threads).build(database, Paths.get(args[1]));
+		}
+		System.out.printf("%,d positions indexed in %,d ms on %d threads, %,d bytes%n", entries,
+				(System.nanoTime() - start) / 1_000_000, threads, Files.size(Paths.get(args[1])));
+	}
+}
@@ -0,0 +1,274 @@
+package chess.db;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import chess.ChessMatch;
+import chess.Color;
+import chess.PieceType;
+
+/*
+ * Endgame tables written by TablebaseGenerator, one file per material, all
+ * memory-mapped. A table holds one byte per position: the distance to mate
+ * in plies, or a draw, or an illegal position.
+ *
+ *   header   magic "CHESSTB1", int version, int pieces, 8 bytes of piece codes
+ *            (side << 3 | PieceType ordinal, 0xFF past the last piece), long entry count
+ *   entries  one byte per (side to move, square of every piece), see EndgameMaterial.index
+ *
+ * A probe counts the pieces of each type to find the table, builds the
+ * index from the bitboards and reads a single byte, so probing costs about
+ * as much as a transposition table lookup. Scores are those of the engine:
+ * MATE - plies when the side to move mates, -(MATE - plies) when it is
+ * mated and 0 for a draw. Positions where castling is still allowed are not
+ * covered.
+ */
+public class Tablebase implements Closeable {
+	public static final int MATE = 32000;
+	public static final int UNKNOWN = Integer.MIN_VALUE;
+	public static final String EXTENSION = ".tb";
+	static final long MAGIC = 0x4348455353544231L;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+
+	// entry codes: plies + 1 for a win or a loss, odd plies being wins
+	static final int DRAW = 0;
+	static final int MAX_PLIES = 252;
+	static final int ILLEGAL = 255;
+
+	private static final Color[] SIDE_COLORS = { Color.WHITE, Color.BLACK };
+	private static final PieceType[] PIECE_TYPES = PieceType.values();
+	private static final int TYPES = PIECE_TYPES.length;
+
+	private final int[] signatures;
+	private final Table[] tables;
+	private final int maxPieces;
+	// the bitboards of a probe, one array per thread since probes run at every node of the parallel searches
+	private final ThreadLocal<long[]> scratch = ThreadLocal.withInitial(() -> new long[2 * TYPES]);
+
+	private static final class Table {
+		final MappedFile file;
+		final int[] sides;
+		final int[] types;
+		final int signature;
+
+		Table(MappedFile file) throws IOException {
+			this.file = file;
+			if (file.size() < HEADER_SIZE || file.getLong(0) != MAGIC)
+				throw new IOException("Not an endgame table");
+			if (file.getInt(8) != VERSION)
+				throw new IOException("Unsupported endgame table version " + file.getInt(8));
+			int pieces = file.getInt(12);
+			if (pieces < 3 || pieces > EndgameMaterial.MAX_PIECES)
+				throw new IOException("Endgame table has " + pieces + " pieces");
+			sides = new int[pieces];
+			types = new int[pieces];
+			int signature = 0;
+			for (int i = 0; i < pieces; i++) {
+				int code = file.get(16 + i);
+				sides[i] = code >>> 3;
+				types[i] = code & 7;
+				if (types[i] != PieceType.KING.ordinal())
+					signature += 1 << EndgameMaterial.shift(sides[i], PieceType.values()[types[i]]);
+			}
+			this.signature = signature;
+			long entries = file.getLong(24);
+			if (entries != 2L << (6 * pieces) || HEADER_SIZE + entries > file.size())
+				throw new IOException("Endgame table is truncated");
+		}
+	}
+
+	private Tablebase(List<Table> found) {
+		found.sort((a, b) -> Integer.compare(a.signature, b.signature));
+		signatures = new int[found.size()];
+		tables = found.toArray(new Table[0]);
+		int max = 0;
+		for (int i = 0; i < tables.length; i++) {
+			signatures[i] = tables[i].signature;
+			max = Math.max(max, tables[i].sides.length);
+		}
+		maxPieces = max;
+	}
+
+	// maps every table of the directory; a missing directory gives an empty tablebase
+	public static Tablebase open(Path directory) throws IOException {
+		List<Table> found = new ArrayList<>();
+		if (Files.isDirectory(directory)) {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+				for (Path path : files) {
+					MappedFile file = MappedFile.open(path);
+					try {
+						found.add(new Table(file));
+					} catch (IOException e) {
+						file.close();
+						throw new IOException(path + ": " + e.getMessage(), e);
+					}
+				}
+			} catch (IOException e) {
+				closeAll(found);
+				throw e;
+			}
+		}
+		return new Tablebase(found);
+	}
+
+	public int getTableCount() {
+		return tables.length;
+	}
+
+	// pieces of the largest table, kings included
+	public int getMaxPieces() {
+		return maxPieces;
+	}
+
+	// distance to mate in plies of a score other than a draw
+	public static int plies(int score) {
+		return MATE - Math.abs(score);
+	}
+
+	// score of the position for the side to move, or UNKNOWN if no table covers it
+	public int probe(ChessMatch match) {
+		if (tables.length == 0 || match.getCastlingRights() != 0)
+			return UNKNOWN;
+		long[] pieces = scratch.get();
+		int count = 0;
+		for (int side = 0; side < 2; side++) {
+			for (PieceType type : PIECE_TYPES) {
+				long bits = match.getPieces(SIDE_COLORS[side], type);
+				pieces[side * TYPES + type.ordinal()] = bits;
+				count += Long.bitCount(bits);
+			}
+		}
+		if (count > maxPieces)
+			return UNKNOWN;
+		int toMove = (match.getCurrentPlayer() == Color.WHITE) ? EndgameMaterial.WHITE : EndgameMaterial.BLACK;
+		return score(pieces, toMove);
+	}
+
+	// the move keeping the best score: the fastest mate, else a draw, else the longest defence; -1 if not covered
+	public int bestMove(ChessMatch match) {
+		if (probe(match) == UNKNOWN)
+			return -1;
+		int bestMove = -1;
+		int bestScore = UNKNOWN;
+		// moves are tried on a copy, making one on the match would drop the moves it can redo
+		ChessMatch copy = match.copy();
+		for (int move : copy.legalMoves()) {
+			copy.makeMove(move);
+			int score = probe(copy);
+			copy.undoMove();
+			if (score == UNKNOWN)
+				continue;
+			score = parent(score);
+			if (score > bestScore) {
+				bestScore = score;
+				bestMove = move;
+			}
+		}
+		return bestMove;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closeAll(Arrays.asList(tables));
+	}
+
+	// score of a position given by bitboards indexed side * 6 + PieceType ordinal, side 0 being white
+	int score(long[] pieces, int toMove) {
+		int signature = 0;
+		for (int side = 0; side < 2; side++) {
+			for (PieceType type : PIECE_TYPES) {
+				if (type == PieceType.KING)
+					continue;
+				int count = Long.bitCount(pieces[side * TYPES + type.ordinal()]);
+				if (count > 3)
+					return UNKNOWN;
+				signature += count << EndgameMaterial.shift(side, type);
+			}
+		}
+		if (signature == 0)
+			return 0;
+		boolean flip = false;
+		Table table = find(signature);
+		if (table == null) {
+			table = find(EndgameMaterial.flip(signature));
+			flip = true;
+			if (table == null)
+				return UNKNOWN;
+		}
+		long index = flip ? 1 - toMove : toMove;
+		for (int i = 0; i < table.sides.length; i++) {
+			int side = flip ? 1 - table.sides[i] : table.sides[i];
+			long bits = pieces[side * TYPES + table.types[i]];
+			// a second piece of the same kind takes the next square
+			for (int j = 0; j < i; j++) {
+				if (table.sides[j] == table.sides[i] && table.types[j] == table.types[i])
+					bits &= bits - 1;
+			}
+			int square = Long.numberOfTrailingZeros(bits);
+			index = (index << 6) | (flip ? square ^ 56 : square);
+		}
+		return score(table.file.get(HEADER_SIZE + index) & 0xFF);
+	}
+
+	static int score(int code) {
+		if (code == DRAW)
+			return 0;
+		if (code > MAX_PLIES + 1)
+			return UNKNOWN;
+		int plies = code - 1;
+		return ((plies & 1) != 0) ? MATE - plies : -(MATE - plies);
+	}
+
+	static int code(int score) {
+		if (score == 0)
+			return DRAW;
+		int plies = plies(score);
+		if (plies > MAX_PLIES)
+			throw new IllegalStateException("Distance to mate of " + plies + " plies does not fit a table entry");
+		return plies + 1;
+	}
+
+	// score of the position before the move that led to a position of the given score
+	static int parent(int score) {
+		if (score > 0)
+			return -score + 1;
+		if (score < 0)
+			return -score - 1;
+		return 0;
+	}
+
+	private Table find(int signature) {
+		int low = 0;
+		int high = signatures.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (signatures[mid] < signature)
+				low = mid + 1;
+			else if (signatures[mid] > signature)
+				high = mid - 1;
+			else
+				return tables[mid];
+		}
+		return null;
+	}
+
+	private static void closeAll(List<Table> tables) throws IOException {
+		IOException failure = null;
+		for (Table table : tables) {
+			try {
+				table.file.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+}
@@ -0,0 +1,460 @@
+package chess.db;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import chess.ChessBoard;
+import chess.Color;
+import chess.PieceType;
+
+/*
+ * Generates endgame tables by retrograde analysis. A first pass over every
+ * position of a table marks the illegal ones, the mates and stalemates, and
+ * notes the best capture or promotion, which lead into smaller tables that
+ * are generated first. Then, one ply at a time, the positions decided at the
+ * previous ply are taken back move by move: every predecessor of a loss is
+ * a win, and a predecessor of a win is a loss once all of its moves are
+ * known to lose. What is still undecided at the end is a draw. Pieces move
+ * by the ChessBoard attack sets the pieces of chess.pieces are built on, and
+ * every pass is split between the threads.
+ */
+public class TablebaseGenerator {
+	// working codes next to those of Tablebase: an undecided position, and a position without captures or promotions
+	private static final int UNDECIDED = 254;
+	private static final int NONE = 254;
+	private static final PieceType[] PROMOTIONS = { PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP,
+			PieceType.KNIGHT };
+	private static final Color[] SIDE_COLORS = { Color.WHITE, Color.BLACK };
+	private static final int TYPES = PieceType.values().length;
+	private static final int CHUNKS_PER_THREAD = 16;
+
+	private final Path directory;
+	private final int threads;
+
+	private interface RangeTask {
+		long run(int from, int to);
+	}
+
+	public TablebaseGenerator(Path directory, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("At least one thread is required");
+		this.directory = directory;
+		this.threads = threads;
+	}
+
+	// generates the table of the material and the smaller ones it converts into, unless they are on disk already;
+	// returns the names of the tables written
+	public List<String> generate(String material) throws IOException {
+		Files.createDirectories(directory);
+		List<String> written = new ArrayList<>();
+		generate(EndgameMaterial.parse(material), written);
+		return written;
+	}
+
+	private void generate(EndgameMaterial material, List<String> written) throws IOException {
+		Path file = directory.resolve(material.name + Tablebase.EXTENSION);
+		if (Files.exists(file))
+			return;
+		for (EndgameMaterial conversion : material.conversions()) {
+			generate(conversion, written);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try (Tablebase smaller = Tablebase.open(directory)) {
+			write(material, new Generation(material, smaller, pool).run(), file);
+		} finally {
+			pool.shutdownNow();
+		}
+		written.add(material.name);
+	}
+
+	private static void write(EndgameMaterial material, byte[] values, Path file) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_SIZE);
+		header.putLong(Tablebase.MAGIC).putInt(Tablebase.VERSION).putInt(material.size());
+		for (int i = 0; i < 8; i++) {
+			header.put((i < material.size()) ? (byte) (material.sides[i] << 3 | material.types[i].ordinal())
+					: (byte) 0xFF);
+		}
+		header.putLong(values.length);
+		header.flip();
+		// a table only appears under its name once it is complete
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer data = ByteBuffer.wrap(values);
+			while (header.hasRemaining()) {
+				out.write(header);
+			}
+			while (data.hasRemaining()) {
+				out.write(data);
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	// the state of one table being generated
+	private final class Generation {
+		private final EndgameMaterial material;
+		private final Tablebase smaller;
+		private final ExecutorService pool;
+		private final int pieces;
+		private final int[] sides;
+		private final PieceType[] types;
+		private final int[] kingSlots = new int[2];
+		private final byte[] values;
+		private final byte[] conversions;
+
+		Generation(EndgameMaterial material, Tablebase smaller, ExecutorService pool) {
+			this.material = material;
+			this.smaller = smaller;
+			this.pool = pool;
+			pieces = material.size();
+			sides = material.sides;
+			types = material.types;
+			for (int i = 0; i < pieces; i++) {
+				if (types[i] == PieceType.KING)
+					kingSlots[sides[i]] = i;
+			}
+			values = new byte[material.entries()];
+			conversions = new byte[material.entries()];
+		}
+
+		byte[] run() throws IOException {
+			parallel((from, to) -> {
+				Worker worker = new Worker();
+				for (int index = from; index < to; index++) {
+					worker.classify(index);
+				}
+				return 0;
+			});
+			// the first pass may decide positions far from mate, through conversions
+			int last = 0;
+			for (int index = 0; index < values.length; index++) {
+				last = Math.max(last, plies(values[index] & 0xFF));
+				last = Math.max(last, plies(conversions[index] & 0xFF));
+			}
+			for (int plies = 1;; plies++) {
+				if (plies > Tablebase.MAX_PLIES)
+					throw new IllegalStateException(material + " has mates longer than " + Tablebase.MAX_PLIES + " plies");
+				int ply = plies;
+				long decided = parallel((from, to) -> {
+					Worker worker = new Worker();
+					Worker predecessor = new Worker();
+					long count = 0;
+					for (int index = from; index < to; index++) {
+						count += worker.step(index, ply, predecessor);
+					}
+					return count;
+				});
+				if (decided == 0 && plies > last)
+					break;
+			}
+			for (int index = 0; index < values.length; index++) {
+				if ((values[index] & 0xFF) == UNDECIDED)
+					values[index] = Tablebase.DRAW;
+			}
+			return values;
+		}
+
+		// plies of a win or loss code, 0 for any other
+		private int plies(int code) {
+			return (code == Tablebase.DRAW || code > Tablebase.MAX_PLIES + 1) ? 0 : code - 1;
+		}
+
+		private long parallel(RangeTask task) throws IOException {
+			int chunks = threads * CHUNKS_PER_THREAD;
+			List<Future<Long>> futures = new ArrayList<>(chunks);
+			for (int c = 0; c < chunks; c++) {
+				int from = (int) ((long) values.length * c / chunks);
+				int to = (int) ((long) values.length * (c + 1) / chunks);
+				futures.add(pool.submit(() -> task.run(from, to)));
+			}
+			long total = 0;
+			try {
+				for (Future<Long> future : futures) {
+					total += future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Generation was interrupted", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new IllegalStateException(e.getCause());
+			}
+			return total;
+		}
+
+		// one position at a time, decoded from its index; a worker is used by a single thread
+		private final class Worker {
+			private final int[] squares = new int[pieces];
+			private final long[] bitboards = new long[2 * TYPES];
+			private final long[] occupiedBy = new long[2];
+			private long occupied;
+			private int toMove;
+
+			// false if two pieces share a square or a pawn stands on the first or last row
+			boolean load(int index) {
+				toMove = index >>> (6 * pieces);
+				occupied = 0;
+				occupiedBy[0] = 0;
+				occupiedBy[1] = 0;
+				for (int i = pieces - 1; i >= 0; i--) {
+					squares[i] = index & 63;
+					index >>>= 6;
+				}
+				for (int i = 0; i < pieces; i++) {
+					long bit = 1L << squares[i];
+					int row = ChessBoard.row(squares[i]);
+					if ((occupied & bit) != 0 || (types[i] == PieceType.PAWN && (row == 0 || row == 7)))
+						return false;
+					occupied |= bit;
+					occupiedBy[sides[i]] |= bit;
+				}
+				return true;
+			}
+
+			// first pass: illegal positions, mates, stalemates, and the best capture or promotion of the others
+			void classify(int index) {
+				if (!load(index) || attacked(squares[kingSlots[1 - toMove]], toMove, -1, occupied)) {
+					values[index] = (byte) Tablebase.ILLEGAL;
+					conversions[index] = (byte) NONE;
+					return;
+				}
+				int moves = 0;
+				int quiet = 0;
+				int best = Tablebase.UNKNOWN;
+				for (int slot = 0; slot < pieces; slot++) {
+					if (sides[slot] != toMove)
+						continue;
+					long targets = targets(slot);
+					while (targets != 0) {
+						int to = Long.numberOfTrailingZeros(targets);
+						targets &= targets - 1;
+						int captured = slotAt(to);
+						if (!legalAfter(slot, to, captured))
+							continue;
+						moves++;
+						if (isPromotion(slot, to)) {
+							for (PieceType promotion : PROMOTIONS) {
+								best = Math.max(best, convert(slot, to, captured, promotion));
+							}
+						} else if (captured >= 0) {
+							best = Math.max(best, convert(slot, to, captured, types[slot]));
+						} else {
+							quiet++;
+						}
+					}
+				}
+				conversions[index] = (byte) NONE;
+				if (moves == 0) {
+					boolean check = attacked(squares[kingSlots[toMove]], 1 - toMove, -1, occupied);
+					values[index] = (byte) Tablebase.code(check ? -Tablebase.MATE : 0);
+				} else if (quiet == 0) {
+					values[index] = (byte) Tablebase.code(best);
+				} else {
+					values[index] = (byte) UNDECIDED;
+					if (best != Tablebase.UNKNOWN)
+						conversions[index] = (byte) Tablebase.code(best);
+				}
+			}
+
+			// pass for positions plies away from mate: predecessors of positions decided at the ply before, and
+			// positions whose best conversion is that far; returns the number of positions decided
+			long step(int index, int plies, Worker predecessor) {
+				int code = values[index] & 0xFF;
+				long decided = 0;
+				if (code == plies) {
+					load(index);
+					int mover = 1 - toMove;
+					for (int slot = 0; slot < pieces; slot++) {
+						if (sides[slot] != mover)
+							continue;
+						long origins = origins(slot);
+						while (origins != 0) {
+							int from = Long.numberOfTrailingZeros(origins);
+							origins &= origins - 1;
+							int before = indexAfter(slot, from, mover);
+							if ((values[before] & 0xFF) != UNDECIDED)
+								continue;
+							// a move into a loss wins; a move into a win only loses if every other move does
+							if ((plies & 1) != 0 || predecessor.losing(before, plies)) {
+								values[before] = (byte) (plies + 1);
+								decided++;
+							}
+						}
+					}
+				} else if (code == UNDECIDED && (conversions[index] & 0xFF) == plies + 1) {
+					if ((plies & 1) != 0 || losing(index, plies)) {
+						values[index] = (byte) (plies + 1);
+						decided++;
+					}
+				}
+				return decided;
+			}
+
+			// whether every move of the position lets the opponent mate within plies - 1 plies
+			boolean losing(int index, int plies) {
+				int conversion = conversions[index] & 0xFF;
+				if (conversion != NONE) {
+					int score = Tablebase.score(conversion);
+					if (score >= 0 || Tablebase.plies(score) > plies)
+						return false;
+				}
+				load(index);
+				for (int slot = 0; slot < pieces; slot++) {
+					if (sides[slot] != toMove)
+						continue;
+					long targets = targets(slot);
+					while (targets != 0) {
+						int to = Long.numberOfTrailingZeros(targets);
+						targets &= targets - 1;
+						if ((occupied & (1L << to)) != 0 || isPromotion(slot, to) || !legalAfter(slot, to, -1))
+							continue;
+						int code = values[indexAfter(slot, to, 1 - toMove)] & 0xFF;
+						if (code == UNDECIDED || plies(code) == 0 || (plies(code) & 1) == 0 || plies(code) >= plies)
+							return false;
+					}
+				}
+				return true;
+			}
+
+			// score for the side to move after a capture or promotion, read from the smaller tables
+			private int convert(int slot, int to, int captured, PieceType type) {
+				Arrays.fill(bitboards, 0L);
+				for (int i = 0; i < pieces; i++) {
+					if (i == captured)
+						continue;
+					PieceType t = (i == slot) ? type : types[i];
+					bitboards[sides[i] * TYPES + t.ordinal()] |= 1L << ((i == slot) ? to : squares[i]);
+				}
+				int score = smaller.score(bitboards, 1 - toMove);
+				if (score == Tablebase.UNKNOWN)
+					throw new IllegalStateException("No table for a conversion of " + material);
+				return Tablebase.parent(score);
+			}
+
+			private boolean isPromotion(int slot, int to) {
+				int row = ChessBoard.row(to);
+				return types[slot] == PieceType.PAWN && (row == 0 || row == 7);
+			}
+
+			// whether the king of the side moving the piece is safe afterwards; captured is the slot taken, or -1
+			private boolean legalAfter(int slot, int to, int captured) {
+				int side = sides[slot];
+				long after = (occupied & ~(1L << squares[slot])) | (1L << to);
+				int king = (slot == kingSlots[side]) ? to : squares[kingSlots[side]];
+				return !attacked(king, 1 - side, captured, after);
+			}
+
+			private boolean attacked(int square, int by, int skip, long occupied) {
+				for (int i = 0; i < pieces; i++) {
+					if (sides[i] == by && i != skip && (attacks(i, squares[i], occupied) & (1L << square)) != 0)
+						return true;
+				}
+				return false;
+			}
+
+			private long attacks(int slot, int square, long occupied) {
+				switch (types[slot]) {
+				case PAWN:
+					return ChessBoard.pawnAttacks(square, SIDE_COLORS[sides[slot]]);
+				case KNIGHT:
+					return ChessBoard.knightAttacks(square);
+				case BISHOP:
+					return ChessBoard.bishopAttacks(square, occupied);
+				case ROOK:
+					return ChessBoard.rookAttacks(square, occupied);
+				case QUEEN:
+					return ChessBoard.bishopAttacks(square, occupied) | ChessBoard.rookAttacks(square, occupied);
+				default:
+					return ChessBoard.kingAttacks(square);
+				}
+			}
+
+			// pseudo-legal targets of the piece in the slot
+			private long targets(int slot) {
+				int square = squares[slot];
+				int side = sides[slot];
+				if (types[slot] != PieceType.PAWN)
+					return attacks(slot, square, occupied) & ~occupiedBy[side];
+				long targets = ChessBoard.pawnAttacks(square, SIDE_COLORS[side]) & occupiedBy[1 - side];
+				int forward = (side == EndgameMaterial.WHITE) ? -ChessBoard.SIZE : ChessBoard.SIZE;
+				int ahead = square + forward;
+				if ((occupied & (1L << ahead)) == 0) {
+					targets |= 1L << ahead;
+					int startRow = (side == EndgameMaterial.WHITE) ? 6 : 1;
+					if (ChessBoard.row(square) == startRow && (occupied & (1L << (ahead + forward))) == 0)
+						targets |= 1L << (ahead + forward);
+				}
+				return targets;
+			}
+
+			// squares the piece in the slot can have come from without capturing
+			private long origins(int slot) {
+				int square = squares[slot];
+				int side = sides[slot];
+				if (types[slot] != PieceType.PAWN)
+					return attacks(slot, square, occupied) & ~occupied;
+				int back = (side == EndgameMaterial.WHITE) ? ChessBoard.SIZE : -ChessBoard.SIZE;
+				int from = square + back;
+				long origins = 0L;
+				if (from >= 0 && from < 64 && (occupied & (1L << from)) == 0) {
+					origins |= 1L << from;
+					int doubleStepRow = (side == EndgameMaterial.WHITE) ? 4 : 3;
+					if (ChessBoard.row(square) == doubleStepRow && (occupied & (1L << (from + back))) == 0)
+						origins |= 1L << (from + back);
+				}
+				return origins;
+			}
+
+			private int slotAt(int square) {
+				for (int i = 0; i < pieces; i++) {
+					if (squares[i] == square)
+						return i;
+				}
+				return -1;
+			}
+
+			// index of the position with the piece in the slot moved to the square and the given side to move
+			private int indexAfter(int slot, int square, int side) {
+				int index = side;
+				for (int i = 0; i < pieces; i++) {
+					index = (index << 6) | ((i == slot) ? square : squares[i]);
+				}
+				return index;
+			}
+		}
+	}
+
+	// java chess.db.TablebaseGenerator tablebases KQK KRK KPK
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: TablebaseGenerator <directory> <material>...");
+			System.exit(2);
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+		TablebaseGenerator generator = new TablebaseGenerator(Paths.get(args[0]), threads);
+		for (int i = 1; i < args.length; i++) {
+			for (String material : args[i].split(",")) {
+				long start = System.nanoTime();
+				List<String> written = generator.generate(material);
+				System.out.printf("%s: %s in %,d ms on %d threads%n", material,
+						written.isEmpty() ? "already generated" : "wrote " + String.join(" ", written),
+						(System.nanoTime() - start) / 1_000_000, threads);
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package chess.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import chess.ChessMatch;
+import chess.db.OpeningBook;
+import chess.db.Tablebase;
+
+/*
+ * Lazy SMP: every thread runs an ordinary Search on its own copy of the
+ * match and all of them share one TranspositionTable. The helpers never
+ * report a move; they only fill the table with results the main search then
+ * finds ready. Half of the helpers start one iteration deeper so the threads
+ * spread over different parts of the tree. When the main search finishes
+ * the helpers are stopped. Book and table moves are looked up before any
+ * helper starts.
+ */
+public class ParallelSearch implements AutoCloseable {
+	private final Search main;
+	private final Search[] helpers;
+	private final ExecutorService pool;
+	private OpeningBook book;
+	private Tablebase tablebase;
+
+	public ParallelSearch(TranspositionTable table, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("At least one search thread is required");
+		main = new Search(table);
+		helpers = new Search[threads - 1];
+		for (int i = 0; i < helpers.length; i++) {
+			helpers[i] = new Search(table);
+			helpers[i].setStartDepth(1 + (i & 1));
+		}
+		pool = helpers.length == 0 ? null : Executors.newFixedThreadPool(helpers.length, r -> {
+			Thread t = new Thread(r, "search-helper");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	public void setOpeningBook(OpeningBook book) {
+		main.setOpeningBook(book);
+		this.book = book;
+	}
+
+	public void setTablebase(Tablebase tablebase) {
+		main.setTablebase(tablebase);
+		for (Search helper : helpers) {
+			helper.setTablebase(tablebase);
+		}
+		this.tablebase = tablebase;
+	}
+
+	public int getThreads() {
+		return helpers.length + 1;
+	}
+
+	// the limits apply to the main search, the helpers run until it is done; nodes are summed over all threads
+	public SearchResult search(ChessMatch match, SearchLimits limits) {
+		if ((book != null && book.bestMove(match) >= 0) || (tablebase != null && tablebase.bestMove(match) >= 0))
+			return main.search(match, limits);
+		List<Future<SearchResult>> futures = new ArrayList<>(helpers.length);
+		SearchLimits helperLimits = SearchLimits.depth(limits.getMaxDepth());
+		for (Search helper : helpers) {
+			ChessMatch copy = match.copy();
+			futures.add(pool.submit(() -> helper.search(copy, helperLimits)));
+		}
+		SearchResult result;
+		long helperNodes;
+		try {
+			result = main.search(match, limits);
+		} finally {
+			helperNodes = stopHelpers(futures);
+		}
+		return new SearchResult(result.getBestMove(), result.getScore(), result.getDepth(),
+				result.getNodes() + helperNodes, result.getNanos());
+	}
+
+	// a helper that has not started yet would clear the stop request, so it is repeated until the helper is done
+	private long stopHelpers(List<Future<SearchResult>> futures) {
+		long nodes = 0;
+		for (int i = 0; i < futures.size(); i++) {
+			while (true) {
+				helpers[i].stop();
+				try {
+					nodes += futures.get(i).get(1, TimeUnit.MILLISECONDS).getNodes();
+					break;
+				} catch (TimeoutException e) {
+					continue;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Search helper failed", e.getCause());
+				}
+			}
+		}
+		return nodes;
+	}
+
+	@Override
+	public void close() {
+		if (pool != null)
+			pool.shutdownNow();
+	}
+}
@@ -0,0 +1,361 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Move;
+import chess.PieceType;
+import chess.db.OpeningBook;
+import chess.db.Tablebase;
+
+/*
+ * Iterative deepening negamax with alpha-beta pruning, a quiescence search
+ * over captures and a transposition table. Moves are ordered by the table
+ * move, then captures by most valuable victim / least valuable attacker,
+ * then killer moves and the history heuristic. Every buffer is allocated
+ * once per Search, so searching does not allocate per node. The search
+ * runs through makeMove/undoMove on one copy of the match per call, since
+ * making a move drops the moves the match could redo; the match given is
+ * not changed.
+ * With an opening book set, a position found in the book is answered with
+ * the most played book move without searching (a result of depth 0). With
+ * endgame tables set, a root position they cover is answered with the
+ * table move and positions inside the tree that they cover are scored
+ * from the tables instead of being searched.
+ */
+public class Search {
+	public static final int MAX_PLY = 64;
+	public static final int MATE = 32000;
+	public static final int INFINITE = 32001;
+
+	private static final int TT_MOVE = 1 << 30;
+	private static final int CAPTURE = 1 << 28;
+	private static final int KILLER = 1 << 27;
+
+	private final TranspositionTable table;
+	private final Evaluator evaluator;
+	private final int[][] moves = new int[MAX_PLY + 1][ChessMatch.MAX_MOVES];
+	private final int[][] scores = new int[MAX_PLY + 1][ChessMatch.MAX_MOVES];
+	private final int[][] killers = new int[MAX_PLY + 1][2];
+	private final int[] history = new int[64 * 64];
+	private final long[] path = new long[MAX_PLY + 2];
+
+	private ChessMatch match;
+	private long nodes;
+	private long maxNodes;
+	private long deadline;
+	private boolean stopped;
+	private volatile boolean stopRequested;
+	private int startDepth = 1;
+	private OpeningBook book;
+	private Tablebase tablebase;
+
+	public Search(TranspositionTable table) {
+		this(table, new Evaluator());
+	}
+
+	public Search(TranspositionTable table, Evaluator evaluator) {
+		this.table = table;
+		this.evaluator = evaluator;
+	}
+
+	public static boolean isMateScore(int score) {
+		return Math.abs(score) >= MATE - MAX_PLY;
+	}
+
+	// null turns the book off
+	public void setOpeningBook(OpeningBook book) {
+		this.book = book;
+	}
+
+	// null turns the tables off
+	public void setTablebase(Tablebase tablebase) {
+		this.tablebase = tablebase;
+	}
+
+	// may be called from another thread; the running search returns its best result so far
+	public void stop() {
+		stopRequested = true;
+	}
+
+	public SearchResult search(ChessMatch match, SearchLimits limits) {
+		long start = System.nanoTime();
+		this.match = match.copy();
+		nodes = 0;
+		maxNodes = limits.getMaxNodes();
+		deadline = limits.getMaxMillis() == Long.MAX_VALUE ? Long.MAX_VALUE
+				: start + limits.getMaxMillis() * 1_000_000L;
+		stopped = false;
+		stopRequested = false;
+		for (int[] k : killers) {
+			k[0] = 0;
+			k[1] = 0;
+		}
+		Arrays.fill(history, 0);
+
+		int[] rootMoves = moves[0];
+		int count = match.legalMoves(rootMoves);
+		if (count == 0)
+			return new SearchResult(-1, match.getCheck() ? -MATE : 0, 0, 0, System.nanoTime() - start);
+		if (book != null) {
+			int bookMove = book.bestMove(match);
+			if (bookMove >= 0)
+				return new SearchResult(bookMove, 0, 0, 0, System.nanoTime() - start);
+		}
+		if (tablebase != null) {
+			int tableMove = tablebase.bestMove(match);
+			if (tableMove >= 0)
+				return new SearchResult(tableMove, fromTablebase(tablebase.probe(match), 0), 0, 0,
+						System.nanoTime() - start);
+		}
+
+		int bestMove = rootMoves[0];
+		int bestScore = -INFINITE;
+		int completedDepth = 0;
+		path[0] = match.getPositionKey();
+		for (int depth = Math.min(startDepth, limits.getMaxDepth()); depth <= limits.getMaxDepth(); depth++) {
+			int score = searchRoot(depth, count);
+			if (stopped)
+				break;
+			bestMove = rootMoves[0];
+			bestScore = score;
+			completedDepth = depth;
+			if (isMateScore(score) && MATE - Math.abs(score) <= depth)
+				break;
+		}
+		return new SearchResult(bestMove, bestScore, completedDepth, nodes, System.nanoTime() - start);
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	// helper threads of a ParallelSearch skip the first iterations so they do not all search the same tree
+	void setStartDepth(int startDepth) {
+		this.startDepth = startDepth;
+	}
+
+	// searches the root moves and moves the best one to the front, so the next iteration starts with it
+	private int searchRoot(int depth, int count) {
+		int[] rootMoves = moves[0];
+		int alpha = -INFINITE;
+		int bestIndex = 0;
+		for (int i = 0; i < count; i++) {
+			match.makeMove(rootMoves[i]);
+			path[1] = match.getPositionKey();
+			int score = -negamax(depth - 1, 1, -INFINITE, -alpha);
+			match.undoMove();
+			if (stopped)
+				return alpha;
+			if (score > alpha) {
+				alpha = score;
+				bestIndex = i;
+			}
+		}
+		int best = rootMoves[bestIndex];
+		System.arraycopy(rootMoves, 0, rootMoves, 1, bestIndex);
+		rootMoves[0] = best;
+		table.store(path[0], best, alpha, depth, TranspositionTable.EXACT);
+		return alpha;
+	}
+
+	private int negamax(int depth, int ply, int alpha, int beta) {
+		if (isRepetition(ply))
+			return 0;
+		if (tablebase != null) {
+			// table mates count plies from this node, search mates from the root
+			int score = tablebase.probe(match);
+			if (score != Tablebase.UNKNOWN)
+				return fromTablebase(score, ply);
+		}
+		boolean inCheck = match.getCheck();
+		if (inCheck && ply < MAX_PLY)
+			depth++;
+		if (depth <= 0 || ply >= MAX_PLY)
+			return quiesce(ply, alpha, beta);
+		if (++nodes % 1024 == 0)
+			checkLimits();
+		if (stopped)
+			return 0;
+
+		long key = path[ply];
+		long entry = table.probe(key);
+		int ttMove = 0;
+		if (entry != 0) {
+			ttMove = TranspositionTable.move(entry);
+			if (TranspositionTable.depth(entry) >= depth) {
+				int score = fromTable(TranspositionTable.score(entry), ply);
+				int bound = TranspositionTable.bound(entry);
+				if (bound == TranspositionTable.EXACT
+						|| (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+						|| (bound == TranspositionTable.UPPER_BOUND && score <= alpha))
+					return score;
+			}
+		}
+
+		int[] list = moves[ply];
+		int count = match.legalMoves(list);
+		if (count == 0)
+			return inCheck ? -MATE + ply : 0;
+		scoreMoves(ply, count, ttMove);
+
+		int originalAlpha = alpha;
+		int bestScore = -INFINITE;
+		int bestMove = 0;
+		for (int i = 0; i < count; i++) {
+			int move = pickMove(ply, i, count);
+			boolean quiet = !isCapture(move) && Move.promotion(move) == null;
+			match.makeMove(move);
+			path[ply + 1] = match.getPositionKey();
+			int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+			match.undoMove();
+			if (stopped)
+				return 0;
+			if (score > bestScore) {
+				bestScore = score;
+				bestMove = move;
+			}
+			if (score > alpha)
+				alpha = score;
+			if (alpha >= beta) {
+				if (quiet) {
+					if (killers[ply][0] != move) {
+						killers[ply][1] = killers[ply][0];
+						killers[ply][0] = move;
+					}
+					history[move & 0xFFF] += depth * depth;
+				}
+				break;
+			}
+		}
+
+		int bound = bestScore >= beta ? TranspositionTable.LOWER_BOUND
+				: bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+		table.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+		return bestScore;
+	}
+
+	// captures and promotions only, until the position is quiet; all evasions when in check
+	private int quiesce(int ply, int alpha, int beta) {
+		if (++nodes % 1024 == 0)
+			checkLimits();
+		if (stopped)
+			return 0;
+		boolean inCheck = match.getCheck();
+		if (!inCheck) {
+			int standPat = evaluator.evaluate(match);
+			if (standPat >= beta || ply >= MAX_PLY)
+				return standPat;
+			if (standPat > alpha)
+				alpha = standPat;
+		} else if (ply >= MAX_PLY) {
+			return evaluator.evaluate(match);
+		}
+
+		int[] list = moves[ply];
+		int count = match.legalMoves(list);
+		if (count == 0)
+			return inCheck ? -MATE + ply : 0;
+		scoreMoves(ply, count, 0);
+		for (int i = 0; i < count; i++) {
+			int move = pickMove(ply, i, count);
+			if (!inCheck && !isCapture(move) && Move.promotion(move) == null)
+				continue;
+			match.makeMove(move);
+			path[ply + 1] = match.getPositionKey();
+			int score = -quiesce(ply + 1, -beta, -alpha);
+			match.undoMove();
+			if (stopped)
+				return 0;
+			if (score > alpha)
+				alpha = score;
+			if (alpha >= beta)
+				break;
+		}
+		return alpha;
+	}
+
+	private void scoreMoves(int ply, int count, int ttMove) {
+		int[] list = moves[ply];
+		int[] score = scores[ply];
+		for (int i = 0; i < count; i++) {
+			int move = list[i];
+			if (move == ttMove) {
+				score[i] = TT_MOVE;
+			} else if (isCapture(move)) {
+				ChessPiece victim = match.pieceAt(Move.to(move));
+				int victimValue = Evaluator.PIECE_VALUES[victim == null ? 0 : victim.getType().ordinal()];
+				int attacker = match.pieceAt(Move.from(move)).getType().ordinal();
+				score[i] = CAPTURE + victimValue * 8 - attacker;
+			} else if (Move.promotion(move) != null) {
+				score[i] = CAPTURE + Evaluator.PIECE_VALUES[Move.promotion(move).ordinal()];
+			} else if (move == killers[ply][0] || move == killers[ply][1]) {
+				score[i] = KILLER;
+			} else {
+				score[i] = Math.min(history[move & 0xFFF], KILLER - 1);
+			}
+		}
+	}
+
+	// selection sort step: brings the best remaining move to position i
+	private int pickMove(int ply, int i, int count) {
+		int[] list = moves[ply];
+		int[] score = scores[ply];
+		int best = i;
+		for (int j = i + 1; j < count; j++) {
+			if (score[j] > score[best])
+				best = j;
+		}
+		int move = list[best];
+		list[best] = list[i];
+		list[i] = move;
+		int s = score[best];
+		score[best] = score[i];
+		score[i] = s;
+		return move;
+	}
+
+	private boolean isCapture(int move) {
+		if (match.pieceAt(Move.to(move)) != null)
+			return true;
+		// #specialmove en passant: a pawn moving sideways onto an empty square
+		ChessPiece piece = match.pieceAt(Move.from(move));
+		return piece.getType() == PieceType.PAWN && (Move.from(move) & 7) != (Move.to(move) & 7);
+	}
+
+	private boolean isRepetition(int ply) {
+		long key = path[ply];
+		for (int i = ply - 2; i >= 0; i -= 2) {
+			if (path[i] == key)
+				return true;
+		}
+		return false;
+	}
+
+	private void checkLimits() {
+		if (stopRequested || nodes >= maxNodes || System.nanoTime() >= deadline)
+			stopped = true;
+	}
+
+	// mate scores are stored relative to the node so they stay valid at other plies
+	private static int toTable(int score, int ply) {
+		if (score >= MATE - MAX_PLY)
+			return score + ply;
+		if (score <= -MATE + MAX_PLY)
+			return score - ply;
+		return score;
+	}
+
+	private static int fromTablebase(int score, int ply) {
+		return (score == 0) ? 0 : Integer.signum(score) * (MATE - ply - Tablebase.plies(score));
+	}
+
+	private static int fromTable(int score, int ply) {
+		if (score >= MATE - MAX_PLY)
+			return score - ply;
+		if (score <= -MATE + MAX_PLY)
+			return score + ply;
+		return score;
+	}
+}
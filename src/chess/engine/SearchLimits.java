@@ -0,0 +1,40 @@
+package chess.engine;
+
+// when a search has to stop: whichever of the three limits is reached first
+public class SearchLimits {
+	private final int maxDepth;
+	private final long maxNodes;
+	private final long maxMillis;
+
+	public SearchLimits(int maxDepth, long maxNodes, long maxMillis) {
+		if (maxDepth < 1)
+			throw new IllegalArgumentException("Search depth must be at least 1");
+		this.maxDepth = Math.min(maxDepth, Search.MAX_PLY);
+		this.maxNodes = maxNodes;
+		this.maxMillis = maxMillis;
+	}
+
+	public static SearchLimits depth(int depth) {
+		return new SearchLimits(depth, Long.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	public static SearchLimits nodes(long nodes) {
+		return new SearchLimits(Search.MAX_PLY, nodes, Long.MAX_VALUE);
+	}
+
+	public static SearchLimits time(long millis) {
+		return new SearchLimits(Search.MAX_PLY, Long.MAX_VALUE, millis);
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public long getMaxNodes() {
+		return maxNodes;
+	}
+
+	public long getMaxMillis() {
+		return maxMillis;
+	}
+}
@@ -0,0 +1,51 @@
+package chess.engine;
+
+import chess.Move;
+
+public class SearchResult {
+	private final int bestMove;
+	private final int score;
+	private final int depth;
+	private final long nodes;
+	private final long nanos;
+
+	public SearchResult(int bestMove, int score, int depth, long nodes, long nanos) {
+		this.bestMove = bestMove;
+		this.score = score;
+		this.depth = depth;
+		this.nodes = nodes;
+		this.nanos = nanos;
+	}
+
+	// packed as described in chess.Move, or -1 when the side to move has no legal move
+	public int getBestMove() {
+		return bestMove;
+	}
+
+	// centipawns from the point of view of the side to move, see Search.isMateScore
+	public int getScore() {
+		return score;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getNanos() {
+		return nanos;
+	}
+
+	public long getNodesPerSecond() {
+		return nodes * 1_000_000_000L / Math.max(nanos, 1);
+	}
+
+	@Override
+	public String toString() {
+		return (bestMove < 0 ? "(none)" : Move.toString(bestMove)) + " score " + score + " depth " + depth
+				+ " nodes " + nodes + " nps " + getNodesPerSecond();
+	}
+}
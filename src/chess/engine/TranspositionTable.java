@@ -0,0 +1,75 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+/*
+ * Fixed-size hash table of search results keyed by ChessMatch.getPositionKey().
+ * Each entry is two longs: the packed data and the key xor-ed with that data.
+ * A reader only accepts an entry whose two halves still xor back to its key,
+ * so entries torn by concurrent writers are simply treated as misses and the
+ * table needs no locks.
+ */
+public class TranspositionTable {
+	public static final int EXACT = 0;
+	public static final int LOWER_BOUND = 1;
+	public static final int UPPER_BOUND = 2;
+
+	private static final int ENTRY_BYTES = 16;
+
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+
+	public TranspositionTable(int megabytes) {
+		if (megabytes < 1)
+			throw new IllegalArgumentException("Transposition table size must be at least 1 MB");
+		long entries = Long.highestOneBit((long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+		entries = Math.min(entries, 1 << 30);
+		keys = new long[(int) entries];
+		data = new long[(int) entries];
+		mask = (int) entries - 1;
+	}
+
+	// packed entry for the key, or 0 when the table holds nothing for it
+	public long probe(long key) {
+		int index = (int) key & mask;
+		long entry = data[index];
+		return (keys[index] ^ entry) == key ? entry : 0L;
+	}
+
+	public void store(long key, int move, int score, int depth, int bound) {
+		int index = (int) key & mask;
+		long old = data[index];
+		if ((keys[index] ^ old) == key && depth(old) > depth && bound != EXACT)
+			return;
+		long entry = (move & 0xFFFFL) | ((long) (score + 32768) << 16) | ((long) (depth & 0xFF) << 32)
+				| ((long) bound << 40);
+		data[index] = entry;
+		keys[index] = key ^ entry;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0L);
+		Arrays.fill(data, 0L);
+	}
+
+	public int capacity() {
+		return keys.length;
+	}
+
+	public static int move(long entry) {
+		return (int) (entry & 0xFFFF);
+	}
+
+	public static int score(long entry) {
+		return (int) ((entry >>> 16) & 0xFFFF) - 32768;
+	}
+
+	public static int depth(long entry) {
+		return (int) ((entry >>> 32) & 0xFF);
+	}
+
+	public static int bound(long entry) {
+		return (int) ((entry >>> 40) & 3);
+	}
+}
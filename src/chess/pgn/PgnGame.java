@@ -0,0 +1,87 @@
+package chess.pgn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import chess.ChessMatch;
+import chess.Color;
+import chess.San;
+
+/*
+ * One game of a PGN file: its tag pairs in file order, the main line as SAN
+ * moves and the result token. Comments, variations and annotation glyphs are
+ * not kept.
+ */
+public class PgnGame {
+	public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	private final long number;
+	private final Map<String, String> tags = new LinkedHashMap<>();
+	private final List<String> moves = new ArrayList<>();
+	private String result = "*";
+	private String error;
+
+	public PgnGame(long number) {
+		this.number = number;
+	}
+
+	// the moves of a match, from the position its history starts at
+	public static PgnGame of(ChessMatch match) {
+		PgnGame game = new PgnGame(1);
+		ChessMatch replay = new ChessMatch(match.getInitialPosition());
+		String fen = replay.toFen();
+		if (!fen.equals(START_FEN)) {
+			game.setTag("SetUp", "1");
+			game.setTag("FEN", fen);
+		}
+		Collections.addAll(game.moves, San.format(replay, match.getMoveHistory()));
+		if (match.getCheckmate())
+			game.result = (match.getCurrentPlayer() == Color.WHITE) ? "1-0" : "0-1";
+		else if (match.getStalemate())
+			game.result = "1/2-1/2";
+		return game;
+	}
+
+	// position of the game in its file, counting from 1
+	public long getNumber() {
+		return number;
+	}
+
+	public Map<String, String> getTags() {
+		return tags;
+	}
+
+	public String getTag(String name) {
+		return tags.get(name);
+	}
+
+	public void setTag(String name, String value) {
+		tags.put(name, value);
+	}
+
+	public List<String> getMoves() {
+		return moves;
+	}
+
+	// "1-0", "0-1", "1/2-1/2" or "*"
+	public String getResult() {
+		return result;
+	}
+
+	public void setResult(String result) {
+		this.result = result;
+	}
+
+	// syntax error found while reading the game, or null
+	public String getError() {
+		return error;
+	}
+
+	void setError(String error) {
+		if (this.error == null)
+			this.error = error;
+	}
+}
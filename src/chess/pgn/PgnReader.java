@@ -0,0 +1,228 @@
+package chess.pgn;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/*
+ * Reads PGN one game at a time from a character stream. Only the game being
+ * read is held in memory: comments, variations, NAGs and escape lines are
+ * skipped as they are read and no token may be longer than MAX_TOKEN, so a
+ * file of any size streams through a fixed amount of buffer. Syntax errors
+ * are recorded on the game (see PgnGame.getError) and reading carries on
+ * with the next game.
+ */
+public class PgnReader implements Closeable {
+	private static final int MAX_TOKEN = 255;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int NONE = -2;
+
+	private final Reader in;
+	private final StringBuilder token = new StringBuilder();
+	private int pending = NONE;
+	private boolean pendingLineStart;
+	private int last = '\n';
+	private boolean lineStart;
+	private long games;
+
+	public PgnReader(Reader in) {
+		this.in = new BufferedReader(in, BUFFER_SIZE);
+	}
+
+	// the next game, or null at the end of the input
+	public PgnGame next() throws IOException {
+		PgnGame game = null;
+		boolean movetext = false;
+		while (true) {
+			int c = read();
+			if (c < 0)
+				return game;
+			if (Character.isWhitespace(c))
+				continue;
+			if (c == '%' && lineStart) {
+				skipLine();
+				continue;
+			}
+			if (game == null)
+				game = new PgnGame(++games);
+
+			switch (c) {
+			case '[':
+				if (movetext) {
+					// a tag after the moves belongs to the next game, which had no result token
+					unread(c);
+					game.setError("Missing result token");
+					return game;
+				}
+				readTag(game);
+				break;
+			case '{':
+				if (!skipUntil('}'))
+					game.setError("Unterminated comment");
+				break;
+			case ';':
+				skipLine();
+				break;
+			case '(':
+				movetext = true;
+				skipVariation(game);
+				break;
+			case ')':
+				game.setError("Unbalanced ')'");
+				break;
+			case '$':
+				readToken(c);
+				break;
+			default:
+				movetext = true;
+				String t = readToken(c);
+				if (t == null) {
+					game.setError("Token longer than " + MAX_TOKEN + " characters");
+				} else if (t.equals("1-0") || t.equals("0-1") || t.equals("1/2-1/2") || t.equals("*")) {
+					game.setResult(t);
+					return game;
+				} else {
+					String move = stripMoveNumber(t);
+					if (!move.isEmpty())
+						game.getMoves().add(move);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	// "12.", "12..." and "..." are move numbers; "12.e4" carries a move after the number
+	private static String stripMoveNumber(String t) {
+		int digits = 0;
+		while (digits < t.length() && Character.isDigit(t.charAt(digits))) {
+			digits++;
+		}
+		int dots = digits;
+		while (dots < t.length() && t.charAt(dots) == '.') {
+			dots++;
+		}
+		return (dots == digits) ? t : t.substring(dots);
+	}
+
+	private void readTag(PgnGame game) throws IOException {
+		int c = skipSpaces(read());
+		token.setLength(0);
+		while (c >= 0 && (Character.isLetterOrDigit(c) || c == '_') && token.length() < MAX_TOKEN) {
+			token.append((char) c);
+			c = read();
+		}
+		String name = token.toString();
+		c = skipSpaces(c);
+		if (name.isEmpty() || c != '"') {
+			malformedTag(game, c);
+			return;
+		}
+		token.setLength(0);
+		c = read();
+		while (c >= 0 && c != '"' && c != '\n' && token.length() < MAX_TOKEN) {
+			if (c == '\\')
+				c = read();
+			token.append((char) c);
+			c = read();
+		}
+		if (c == '"')
+			c = skipSpaces(read());
+		if (c != ']') {
+			malformedTag(game, c);
+			return;
+		}
+		game.setTag(name, token.toString());
+	}
+
+	// drops the rest of the line the broken tag is on
+	private void malformedTag(PgnGame game, int c) throws IOException {
+		game.setError("Malformed tag pair");
+		if (c >= 0 && c != '\n')
+			skipLine();
+	}
+
+	// reads a symbol starting with c, or returns null if it is too long
+	private String readToken(int c) throws IOException {
+		token.setLength(0);
+		while (c >= 0 && !Character.isWhitespace(c) && "{}()[];".indexOf(c) < 0) {
+			if (token.length() == MAX_TOKEN) {
+				while (c >= 0 && !Character.isWhitespace(c)) {
+					c = read();
+				}
+				return null;
+			}
+			token.append((char) c);
+			c = read();
+		}
+		if (c >= 0)
+			unread(c);
+		return token.toString();
+	}
+
+	// variations may nest and contain comments that use parentheses
+	private void skipVariation(PgnGame game) throws IOException {
+		int depth = 1;
+		while (depth > 0) {
+			int c = read();
+			if (c < 0) {
+				game.setError("Unterminated variation");
+				return;
+			}
+			if (c == '(')
+				depth++;
+			else if (c == ')')
+				depth--;
+			else if (c == '{')
+				skipUntil('}');
+			else if (c == ';')
+				skipLine();
+		}
+	}
+
+	private int skipSpaces(int c) throws IOException {
+		while (c == ' ' || c == '\t') {
+			c = read();
+		}
+		return c;
+	}
+
+	private boolean skipUntil(char end) throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c >= 0 && c != end);
+		return c >= 0;
+	}
+
+	private void skipLine() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c >= 0 && c != '\n');
+	}
+
+	private int read() throws IOException {
+		int c;
+		if (pending != NONE) {
+			c = pending;
+			pending = NONE;
+			lineStart = pendingLineStart;
+		} else {
+			c = in.read();
+			lineStart = last == '\n';
+		}
+		last = c;
+		return c;
+	}
+
+	// puts back the character just read
+	private void unread(int c) {
+		pending = c;
+		pendingLineStart = lineStart;
+	}
+}
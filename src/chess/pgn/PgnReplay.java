@@ -0,0 +1,53 @@
+package chess.pgn;
+
+import chess.ChessException;
+import chess.ChessMatch;
+import chess.Color;
+import chess.San;
+
+/*
+ * Replays games through the rules of ChessMatch, move by move with
+ * performChessMove as a player would, and checks
+ * that checkmate and stalemate agree with the result token.
+ */
+public class PgnReplay {
+
+	private PgnReplay() {
+	}
+
+	public static ReplayResult replay(PgnGame game) {
+		if (game.getError() != null)
+			return new ReplayResult(game.getNumber(), 0, game.getResult(), game.getError());
+		int plies = 0;
+		String san = null;
+		try {
+			String fen = game.getTag("FEN");
+			ChessMatch match = (fen != null) ? ChessMatch.fromFen(fen) : new ChessMatch();
+			for (String move : game.getMoves()) {
+				san = move;
+				if (match.getCheckmate() || match.getStalemate())
+					throw new ChessException("Move after the end of the game");
+				match.performChessMove(San.parse(match, move));
+				plies++;
+			}
+			String error = checkResult(match, game.getResult());
+			return new ReplayResult(game.getNumber(), plies, game.getResult(), error);
+		} catch (ChessException e) {
+			String where = (san == null) ? "" : "move " + (plies / 2 + 1) + (plies % 2 == 0 ? ". " : "... ") + san
+					+ ": ";
+			return new ReplayResult(game.getNumber(), plies, game.getResult(), where + e.getMessage());
+		}
+	}
+
+	// a game that ends on the board must carry the matching result; unfinished games may end any way
+	private static String checkResult(ChessMatch match, String result) {
+		String expected = null;
+		if (match.getCheckmate())
+			expected = (match.getCurrentPlayer() == Color.WHITE) ? "1-0" : "0-1";
+		else if (match.getStalemate())
+			expected = "1/2-1/2";
+		if (expected == null || expected.equals(result) || result.equals("*"))
+			return null;
+		return "Result " + result + " but the game ends " + expected;
+	}
+}
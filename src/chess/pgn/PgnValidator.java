@@ -0,0 +1,114 @@
+package chess.pgn;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/*
+ * Validates a PGN archive on all cores. The calling thread reads games and
+ * hands them out in chunks of CHUNK_SIZE to a fork-join pool, where every
+ * game is replayed on its own ChessMatch; reading is a small part of the
+ * cost next to replaying, so one reader keeps the pool busy. At most a few
+ * chunks per thread are in flight, so memory stays bounded however large
+ * the archive is.
+ */
+public class PgnValidator {
+	private static final int CHUNK_SIZE = 256;
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final int threads;
+
+	private long plies;
+	private final List<ReplayResult> invalid = new ArrayList<>();
+
+	public PgnValidator(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("At least one thread is required");
+		this.threads = threads;
+	}
+
+	public ValidationReport validate(Reader in) throws IOException {
+		long start = System.nanoTime();
+		long games = 0;
+		plies = 0;
+		invalid.clear();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		Semaphore inFlight = new Semaphore(threads * CHUNKS_PER_THREAD);
+		try (PgnReader reader = new PgnReader(in)) {
+			List<PgnGame> chunk = new ArrayList<>(CHUNK_SIZE);
+			PgnGame game;
+			while ((game = reader.next()) != null) {
+				games++;
+				chunk.add(game);
+				if (chunk.size() == CHUNK_SIZE) {
+					submit(pool, inFlight, chunk);
+					chunk = new ArrayList<>(CHUNK_SIZE);
+				}
+			}
+			if (!chunk.isEmpty())
+				submit(pool, inFlight, chunk);
+			// every chunk holds one permit until it is done
+			inFlight.acquireUninterruptibly(threads * CHUNKS_PER_THREAD);
+		} finally {
+			pool.shutdownNow();
+		}
+		synchronized (this) {
+			return new ValidationReport(games, plies, System.nanoTime() - start, invalid);
+		}
+	}
+
+	private void submit(ForkJoinPool pool, Semaphore inFlight, List<PgnGame> chunk) {
+		inFlight.acquireUninterruptibly();
+		pool.execute(() -> {
+			try {
+				replay(chunk);
+			} finally {
+				inFlight.release();
+			}
+		});
+	}
+
+	// the totals of a chunk are merged once, so the threads hardly ever wait on each other
+	private void replay(List<PgnGame> chunk) {
+		long chunkPlies = 0;
+		List<ReplayResult> chunkInvalid = new ArrayList<>();
+		for (PgnGame game : chunk) {
+			ReplayResult result;
+			try {
+				result = PgnReplay.replay(game);
+			} catch (RuntimeException e) {
+				result = new ReplayResult(game.getNumber(), 0, game.getResult(), "Internal error: " + e);
+			}
+			chunkPlies += result.getPlies();
+			if (!result.isValid())
+				chunkInvalid.add(result);
+		}
+		synchronized (this) {
+			plies += chunkPlies;
+			invalid.addAll(chunkInvalid);
+		}
+	}
+
+	// java chess.pgn.PgnValidator games.pgn [threads]
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: PgnValidator <file.pgn> [threads]");
+			System.exit(2);
+		}
+		int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		ValidationReport report = new PgnValidator(threads).validate(
+				new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.ISO_8859_1));
+		for (ReplayResult result : report.getInvalid()) {
+			System.out.println(result);
+		}
+		System.out.println(report + " on " + threads + " threads");
+		if (!report.getInvalid().isEmpty())
+			System.exit(1);
+	}
+}
@@ -0,0 +1,117 @@
+package chess.pgn;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import chess.ChessException;
+
+/*
+ * Writes games in PGN export format: the seven tag roster first (with "?"
+ * for missing values), the other tags after it, then the movetext wrapped
+ * at 79 columns and a blank line between games.
+ */
+public class PgnWriter implements Closeable, Flushable {
+	private static final String[] SEVEN_TAG_ROSTER = { "Event", "Site", "Date", "Round", "White", "Black",
+			"Result" };
+	private static final int LINE_LENGTH = 79;
+
+	private final Writer out;
+
+	public PgnWriter(Writer out) {
+		this.out = new BufferedWriter(out);
+	}
+
+	public void write(PgnGame game) throws IOException {
+		Map<String, String> tags = game.getTags();
+		// numbering starts from the FEN, if the game does not start from the initial position; read before
+		// anything is written, so a bad FEN leaves no partial game behind
+		int number = 1;
+		boolean white = true;
+		String fen = tags.get("FEN");
+		if (fen != null) {
+			String[] fields = fen.trim().split("\\s+");
+			white = fields.length < 2 || !fields[1].equals("b");
+			if (fields.length >= 6)
+				number = moveNumber(fields[5], fen);
+		}
+
+		for (String name : SEVEN_TAG_ROSTER) {
+			String value = name.equals("Result") ? game.getResult() : tags.get(name);
+			writeTag(name, value != null ? value : name.equals("Date") ? "????.??.??" : "?");
+		}
+		for (Map.Entry<String, String> tag : tags.entrySet()) {
+			if (!isRosterTag(tag.getKey()))
+				writeTag(tag.getKey(), tag.getValue());
+		}
+		out.write('\n');
+
+		StringBuilder line = new StringBuilder(LINE_LENGTH + 16);
+		boolean first = true;
+		for (String move : game.getMoves()) {
+			if (white)
+				append(line, number + ".");
+			else if (first)
+				append(line, number + "...");
+			append(line, move);
+			if (!white)
+				number++;
+			white = !white;
+			first = false;
+		}
+		append(line, game.getResult());
+		out.write(line.toString());
+		out.write("\n\n");
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void append(StringBuilder line, String token) throws IOException {
+		if (line.length() > 0 && line.length() + 1 + token.length() > LINE_LENGTH) {
+			out.write(line.toString());
+			out.write('\n');
+			line.setLength(0);
+		}
+		if (line.length() > 0)
+			line.append(' ');
+		line.append(token);
+	}
+
+	private void writeTag(String name, String value) throws IOException {
+		out.write('[');
+		out.write(name);
+		out.write(" \"");
+		out.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+		out.write("\"]\n");
+	}
+
+	private static boolean isRosterTag(String name) {
+		for (String roster : SEVEN_TAG_ROSTER) {
+			if (roster.equals(name))
+				return true;
+		}
+		return false;
+	}
+
+	private static int moveNumber(String field, String fen) {
+		try {
+			int n = Integer.parseInt(field);
+			if (n < 1)
+				throw new NumberFormatException();
+			return n;
+		} catch (NumberFormatException e) {
+			throw new ChessException("Invalid FEN, bad fullmove number '" + field + "': " + fen);
+		}
+	}
+}
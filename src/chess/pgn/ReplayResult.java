@@ -0,0 +1,44 @@
+package chess.pgn;
+
+// what came out of replaying one game: how far it got and the first error, if any
+public class ReplayResult {
+	private final long number;
+	private final int plies;
+	private final String result;
+	private final String error;
+
+	public ReplayResult(long number, int plies, String result, String error) {
+		this.number = number;
+		this.plies = plies;
+		this.result = result;
+		this.error = error;
+	}
+
+	// position of the game in its file, counting from 1
+	public long getNumber() {
+		return number;
+	}
+
+	// moves played before the end of the game or the first error
+	public int getPlies() {
+		return plies;
+	}
+
+	// result token of the game as written in the file
+	public String getResult() {
+		return result;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public boolean isValid() {
+		return error == null;
+	}
+
+	@Override
+	public String toString() {
+		return "Game " + number + ": " + plies + " plies, " + result + (error == null ? "" : ", " + error);
+	}
+}
@@ -0,0 +1,47 @@
+package chess.pgn;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// totals of a PgnValidator run and the invalid games in file order
+public class ValidationReport {
+	private final long games;
+	private final long plies;
+	private final long nanos;
+	private final List<ReplayResult> invalid;
+
+	ValidationReport(long games, long plies, long nanos, List<ReplayResult> invalid) {
+		this.games = games;
+		this.plies = plies;
+		this.nanos = nanos;
+		this.invalid = new ArrayList<>(invalid);
+		this.invalid.sort(Comparator.comparingLong(ReplayResult::getNumber));
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getPlies() {
+		return plies;
+	}
+
+	public long getNanos() {
+		return nanos;
+	}
+
+	public List<ReplayResult> getInvalid() {
+		return invalid;
+	}
+
+	public double getGamesPerSecond() {
+		return games * 1e9 / Math.max(nanos, 1);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%,d games, %,d invalid, %,d plies in %,d ms (%,.0f games/s)", games, invalid.size(),
+				plies, nanos / 1_000_000, getGamesPerSecond());
+	}
+}
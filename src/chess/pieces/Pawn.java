@@ -1,92 +1,75 @@
 package chess.pieces;
 
-import boardgame.Board;
-import boardgame.Position;
+import chess.ChessBoard;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.Color;
+import chess.Move;
+import chess.PieceType;
 
 public class Pawn extends ChessPiece {
 
+	private static final PieceType[] PROMOTIONS = { PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP,
+			PieceType.KNIGHT };
+
 	private ChessMatch chessMatch;
 
-	public Pawn(Board board, Color color, ChessMatch chessMatch) {
+	public Pawn(ChessBoard board, Color color, ChessMatch chessMatch) {
 		super(board, color);
 		this.chessMatch = chessMatch;
 	}
 
 	@Override
-	public boolean[][] possibleMoves() {
-		boolean[][] mat = new boolean[getBoard().getRows()][getBoard().getColumns()];
-
-		Position p = new Position(0, 0);
+	public long targets() {
+		int square = getSquare();
+		int row = ChessBoard.row(square);
+		int column = ChessBoard.column(square);
+		long empty = ~getBoard().getOccupied();
+		long opponent = getBoard().getPieces(getColor() == Color.WHITE ? Color.BLACK : Color.WHITE);
+		long mat = ChessBoard.pawnAttacks(square, getColor()) & opponent;
 
-		if (getColor() == Color.WHITE) {
-			p.setValues(position.getRow() - 1, position.getColumn());
-			if (getBoard().positionExists(p) && !getBoard().containsPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
-			}
-			p.setValues(position.getRow() - 2, position.getColumn());
-			Position p2 = new Position(position.getRow() - 1, position.getColumn());
-			if (getBoard().positionExists(p) && !getBoard().containsPiece(p) && getBoard().positionExists(p2)
-					&& !getBoard().containsPiece(p2) && getMoveCount() == 0) {
-				mat[p.getRow()][p.getColumn()] = true;
+		int forward = (getColor() == Color.WHITE) ? -ChessBoard.SIZE : ChessBoard.SIZE;
+		int startRow = (getColor() == Color.WHITE) ? 6 : 1;
+		int enPassantRow = (getColor() == Color.WHITE) ? 3 : 4;
+		int ahead = square + forward;
+		if (ahead >= 0 && ahead < ChessBoard.SIZE * ChessBoard.SIZE && (empty & (1L << ahead)) != 0) {
+			mat |= 1L << ahead;
+			if (row == startRow && (empty & (1L << (ahead + forward))) != 0) {
+				mat |= 1L << (ahead + forward);
 			}
-			p.setValues(position.getRow() - 1, position.getColumn() - 1);
-			if (getBoard().positionExists(p) && containsOpponentPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
-			}
-			p.setValues(position.getRow() - 1, position.getColumn() + 1);
-			if (getBoard().positionExists(p) && containsOpponentPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
-			}
-			// #specialmove en passant white
-			if (position.getRow() == 3) {
-				Position left = new Position(position.getRow(), position.getColumn() - 1);
-				if (getBoard().positionExists(left) && containsOpponentPiece(left)
-						&& getBoard().piece(left) == chessMatch.getEnPassantVulnerable()) {
-					mat[left.getRow() - 1][left.getColumn()] = true;
-				}
-				Position right = new Position(position.getRow(), position.getColumn() + 1);
-				if (getBoard().positionExists(right) && containsOpponentPiece(right)
-						&& getBoard().piece(right) == chessMatch.getEnPassantVulnerable()) {
-					mat[right.getRow() - 1][right.getColumn()] = true;
-				}
-			}
-		} else {
-			p.setValues(position.getRow() + 1, position.getColumn());
-			if (getBoard().positionExists(p) && !getBoard().containsPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
-			}
-			p.setValues(position.getRow() + 2, position.getColumn());
-			Position p2 = new Position(position.getRow() + 1, position.getColumn());
-			if (getBoard().positionExists(p) && !getBoard().containsPiece(p) && getBoard().positionExists(p2)
-					&& !getBoard().containsPiece(p2) && getMoveCount() == 0) {
-				mat[p.getRow()][p.getColumn()] = true;
-			}
-			p.setValues(position.getRow() + 1, position.getColumn() - 1);
-			if (getBoard().positionExists(p) && containsOpponentPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
+		}
+
+		// #specialmove en passant
+		ChessPiece vulnerable = chessMatch.getEnPassantVulnerable();
+		if (row == enPassantRow && vulnerable != null && vulnerable.getColor() != getColor()) {
+			if (column > 0 && getBoard().pieceAt(square - 1) == vulnerable) {
+				mat |= 1L << (square - 1 + forward);
 			}
-			p.setValues(position.getRow() + 1, position.getColumn() + 1);
-			if (getBoard().positionExists(p) && containsOpponentPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
+			if (column < ChessBoard.SIZE - 1 && getBoard().pieceAt(square + 1) == vulnerable) {
+				mat |= 1L << (square + 1 + forward);
 			}
-			// #specialmove en passant black
-			if (position.getRow() == 4) {
-				Position left = new Position(position.getRow(), position.getColumn() - 1);
-				if (getBoard().positionExists(left) && containsOpponentPiece(left)
-						&& getBoard().piece(left) == chessMatch.getEnPassantVulnerable()) {
-					mat[left.getRow() + 1][left.getColumn()] = true;
-				}
-				Position right = new Position(position.getRow(), position.getColumn() + 1);
-				if (getBoard().positionExists(right) && containsOpponentPiece(right)
-						&& getBoard().piece(right) == chessMatch.getEnPassantVulnerable()) {
-					mat[right.getRow() + 1][right.getColumn()] = true;
+		}
+		return mat;
+	}
+
+	// #specialmove promotion: a move onto the last row is expanded into one move per piece type
+	@Override
+	public int generateMoves(int[] moves, int count) {
+		int from = getSquare();
+		long targets = targets();
+		while (targets != 0) {
+			int to = Long.numberOfTrailingZeros(targets);
+			targets &= targets - 1;
+			int row = ChessBoard.row(to);
+			if (row == 0 || row == ChessBoard.SIZE - 1) {
+				for (PieceType type : PROMOTIONS) {
+					moves[count++] = Move.of(from, to, type);
 				}
+			} else {
+				moves[count++] = Move.of(from, to);
 			}
 		}
-		return mat;
+		return count;
 	}
 
 	@Override
@@ -94,4 +77,9 @@ public class Pawn extends ChessPiece {
 		return "P";
 	}
 
+	@Override
+	public PieceType getType() {
+		return PieceType.PAWN;
+	}
+
 }
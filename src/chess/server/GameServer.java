@@ -0,0 +1,260 @@
+package chess.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import boardgame.BoardException;
+import chess.ChessException;
+import chess.ChessMatch;
+import chess.ChessPosition;
+import chess.Move;
+
+/*
+ * Hosts many matches over a line protocol on TCP. Every connection is a
+ * session served by its own (virtual, on Java 21) thread, which reads one
+ * command per line and answers with one line, "OK ..." or "ERR message":
+ *
+ *   NEW [fen]          OK <id>
+ *   MOVE <id> <move>   OK <status> <fen>   move in coordinates, e.g. e2e4 or e7e8n
+ *   MOVES <id>         OK <move>...
+ *   STATE <id>         OK <status> <fen>   status: playing, check, checkmate, stalemate or draw
+ *   UNDO <id>          OK <status> <fen>
+ *   CLOSE <id>         OK
+ *   QUIT               ends the session
+ *
+ * Any session may address any match. A match is only touched by the tasks
+ * of its SerialExecutor, so sessions never lock a match. The executor drains
+ * its queue on the session that found it idle: a command on an uncontended
+ * match runs on the thread that read it, without a hand-off, and sessions
+ * meeting on a busy match leave their commands to that drain and park.
+ *
+ * Most matches sit idle between moves, so a sweep puts the ones left alone
+ * for idleMillis away in their compact DormantMatch form; the next command
+ * for such a match replays it first.
+ */
+public class GameServer implements Closeable {
+	public static final int DEFAULT_PORT = 7878;
+	public static final long DEFAULT_IDLE_MILLIS = 30_000;
+
+	private final ServerSocket socket;
+	private final ExecutorService sessions;
+	private final ScheduledExecutorService sweeper;
+	private final long idleMillis;
+	private final Map<Long, HostedMatch> matches = new ConcurrentHashMap<>();
+	private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+	private final AtomicLong ids = new AtomicLong();
+
+	public GameServer(int port) throws IOException {
+		this(port, DEFAULT_IDLE_MILLIS);
+	}
+
+	public GameServer(int port, long idleMillis) throws IOException {
+		if (idleMillis <= 0)
+			throw new IllegalArgumentException("The idle time must be positive: " + idleMillis);
+		socket = new ServerSocket(port, 1024);
+		sessions = VirtualThreads.newThreadPerTaskExecutor("chess-session");
+		sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "chess-sweeper");
+			t.setDaemon(true);
+			return t;
+		});
+		this.idleMillis = idleMillis;
+	}
+
+	public int getPort() {
+		return socket.getLocalPort();
+	}
+
+	public int getMatchCount() {
+		return matches.size();
+	}
+
+	// accepts connections on a thread of its own until the server is closed
+	public void start() {
+		Thread acceptor = new Thread(this::accept, "chess-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		long period = Math.max(1, idleMillis / 2);
+		sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+		for (Socket client : clients) {
+			client.close();
+		}
+		sessions.shutdownNow();
+		sweeper.shutdownNow();
+	}
+
+	// runs one command line and returns the answer line
+	String execute(String line) {
+		String[] args = line.trim().split("\\s+");
+		try {
+			switch (args[0].toUpperCase()) {
+			case "NEW":
+				String fen = line.trim().substring(args[0].length()).trim();
+				return "OK " + create(fen.isEmpty() ? new ChessMatch() : ChessMatch.fromFen(fen));
+			case "MOVE":
+				checkArguments(args, 3);
+				return "OK " + find(args[1]).call(match -> {
+					move(match, args[2]);
+					return state(match);
+				});
+			case "MOVES":
+				checkArguments(args, 2);
+				return "OK" + find(args[1]).call(match -> {
+					StringBuilder sb = new StringBuilder();
+					if (!match.getCheckmate() && match.getDraw() == null) {
+						for (int move : match.legalMoves()) {
+							sb.append(' ').append(Move.toString(move));
+						}
+					}
+					return sb.toString();
+				});
+			case "STATE":
+				checkArguments(args, 2);
+				return "OK " + find(args[1]).call(GameServer::state);
+			case "UNDO":
+				checkArguments(args, 2);
+				return "OK " + find(args[1]).call(match -> {
+					if (!match.canUndo())
+						throw new ChessException("There is no move to undo");
+					match.undoMove();
+					return state(match);
+				});
+			case "CLOSE":
+				checkArguments(args, 2);
+				if (matches.remove(id(args[1])) == null)
+					throw new ChessException("No match " + args[1]);
+				return "OK";
+			default:
+				return "ERR Unknown command " + args[0];
+			}
+		} catch (BoardException | IllegalArgumentException | IllegalStateException e) {
+			return "ERR " + e.getMessage();
+		}
+	}
+
+	private long create(ChessMatch match) {
+		long id = ids.incrementAndGet();
+		matches.put(id, new HostedMatch(id, match, Runnable::run));
+		return id;
+	}
+
+	private HostedMatch find(String id) {
+		HostedMatch match = matches.get(id(id));
+		if (match == null)
+			throw new ChessException("No match " + id);
+		return match;
+	}
+
+	private static long id(String id) {
+		try {
+			return Long.parseLong(id);
+		} catch (NumberFormatException e) {
+			throw new ChessException("Invalid match id " + id);
+		}
+	}
+
+	private static void checkArguments(String[] args, int count) {
+		if (args.length != count)
+			throw new ChessException(args[0].toUpperCase() + " takes " + (count - 1) + " argument(s)");
+	}
+
+	// a move in coordinates; a promotion without a piece letter promotes to a queen
+	private static void move(ChessMatch match, String move) {
+		if (match.getCheckmate() || match.getDraw() != null)
+			throw new ChessException("The game is over");
+		if (move.length() != 4 && move.length() != 5)
+			throw new ChessException("Invalid move " + move);
+		ChessPosition source = ChessPosition.of(move.charAt(0), move.charAt(1) - '0');
+		ChessPosition target = ChessPosition.of(move.charAt(2), move.charAt(3) - '0');
+		match.performChessMove(source, target);
+		if (match.getPromoted() != null)
+			match.replacePromotedPiece(move.length() == 5 ? move.substring(4).toUpperCase() : "Q");
+	}
+
+	private static String state(ChessMatch match) {
+		String status = match.getCheckmate() ? "checkmate"
+				: match.getStalemate() ? "stalemate" : match.getDraw() != null ? "draw"
+				: match.getCheck() ? "check" : "playing";
+		return status + " " + match.toFen();
+	}
+
+	private void sweep() {
+		sleepIdleMatches(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleMillis));
+	}
+
+	// puts the matches unused since the given System.nanoTime() to sleep; the tasks run on the calling thread
+	// unless a session is busy with the match
+	void sleepIdleMatches(long since) {
+		for (HostedMatch match : matches.values()) {
+			match.sleepIfIdle(since);
+		}
+	}
+
+	private void accept() {
+		while (!socket.isClosed()) {
+			try {
+				Socket client = socket.accept();
+				client.setTcpNoDelay(true);
+				clients.add(client);
+				sessions.execute(() -> serve(client));
+			} catch (IOException | RejectedExecutionException e) {
+				if (socket.isClosed())
+					return;
+			}
+		}
+	}
+
+	private void serve(Socket client) {
+		try (Socket s = client;
+				BufferedReader in = new BufferedReader(
+						new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+				Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.isBlank())
+					continue;
+				if (line.trim().equalsIgnoreCase("QUIT"))
+					break;
+				out.write(execute(line));
+				out.write('\n');
+				out.flush();
+			}
+		} catch (IOException e) {
+			// the client went away
+		} finally {
+			clients.remove(client);
+		}
+	}
+
+	// java chess.server.GameServer [port] [idle milliseconds]
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		long idleMillis = (args.length > 1) ? Long.parseLong(args[1]) : DEFAULT_IDLE_MILLIS;
+		GameServer server = new GameServer(port, idleMillis);
+		server.start();
+		System.out.printf("Serving matches on port %d, sessions on %s threads%n", server.getPort(),
+				VirtualThreads.available() ? "virtual" : "platform");
+	}
+}
@@ -0,0 +1,68 @@
+package chess.server;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import chess.ChessMatch;
+import chess.DormantMatch;
+
+/*
+ * A match of the server together with the executor it is confined to. A
+ * match left alone is put away as a DormantMatch by sleepIfIdle and woken
+ * up by the next command, so only one of match and dormant is set.
+ */
+final class HostedMatch {
+	private final long id;
+	private final SerialExecutor executor;
+	private ChessMatch match;
+	private DormantMatch dormant;
+	private long lastUsed;
+
+	HostedMatch(long id, ChessMatch match, Executor workers) {
+		this.id = id;
+		this.match = match;
+		executor = new SerialExecutor(workers);
+		lastUsed = System.nanoTime();
+	}
+
+	long getId() {
+		return id;
+	}
+
+	// runs the action on the executor of the match and waits for it; exceptions of the action are rethrown here
+	<T> T call(Function<ChessMatch, T> action) {
+		CompletableFuture<T> result = CompletableFuture.supplyAsync(() -> action.apply(awake()), executor);
+		try {
+			return result.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+
+	// puts the match away if no command touched it since the given System.nanoTime(); does not wait
+	void sleepIfIdle(long since) {
+		executor.execute(() -> {
+			if (match != null && lastUsed - since < 0) {
+				try {
+					dormant = match.toDormant();
+					match = null;
+				} catch (IllegalStateException e) {
+					// a promotion is still open, the match stays awake
+				}
+			}
+		});
+	}
+
+	private ChessMatch awake() {
+		if (match == null) {
+			match = dormant.wake();
+			dormant = null;
+		}
+		lastUsed = System.nanoTime();
+		return match;
+	}
+}
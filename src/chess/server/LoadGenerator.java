@@ -0,0 +1,179 @@
+package chess.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/*
+ * Measures the server: first it parks many idle matches and reports the
+ * heap they take, live and put away as dormant matches, then every client
+ * plays random legal moves on a match of its own and the latency of each
+ * MOVE round trip is recorded.
+ *
+ *   java chess.server.LoadGenerator [idle matches] [clients] [moves per client] [host:port]
+ *
+ * Without a host it starts a server in the same JVM, which makes the heap
+ * figure meaningful and leaves the network to the loopback device.
+ */
+public class LoadGenerator {
+	private static final int CONNECTIONS = 8;
+
+	// one connection speaking the line protocol
+	private static final class Client implements Closeable {
+		private final Socket socket;
+		private final BufferedReader in;
+		private final Writer out;
+
+		Client(String host, int port) throws IOException {
+			socket = new Socket(host, port);
+			socket.setTcpNoDelay(true);
+			in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+		}
+
+		String send(String command) throws IOException {
+			out.write(command);
+			out.write('\n');
+			out.flush();
+			String answer = in.readLine();
+			if (answer == null)
+				throw new IOException("The server closed the connection");
+			if (!answer.startsWith("OK"))
+				throw new IOException(command + ": " + answer);
+			return answer.length() > 2 ? answer.substring(3) : "";
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int idle = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+		int clients = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+		int moves = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+
+		GameServer server = null;
+		String host = "localhost";
+		int port;
+		if (args.length > 3) {
+			int colon = args[3].lastIndexOf(':');
+			host = args[3].substring(0, colon);
+			port = Integer.parseInt(args[3].substring(colon + 1));
+		} else {
+			server = new GameServer(0);
+			server.start();
+			port = server.getPort();
+			System.out.printf("Server on port %d, sessions on %s threads%n", port,
+					VirtualThreads.available() ? "virtual" : "platform");
+		}
+
+		ExecutorService pool = VirtualThreads.newThreadPerTaskExecutor("load-client");
+		try {
+			long heapBefore = usedHeap();
+			long start = System.nanoTime();
+			createIdle(pool, host, port, idle);
+			long elapsed = System.nanoTime() - start;
+			System.out.printf("Created %,d idle matches in %.2f s%n", idle, elapsed / 1e9);
+			if (server != null && idle > 0) {
+				long heap = usedHeap() - heapBefore;
+				System.out.printf("Heap: %,d KB in all, %,d bytes per idle match%n", heap / 1024, heap / idle);
+				start = System.nanoTime();
+				server.sleepIdleMatches(System.nanoTime());
+				elapsed = System.nanoTime() - start;
+				long dormant = usedHeap() - heapBefore;
+				System.out.printf("Put them away in %.2f s: %,d KB in all, %,d bytes per dormant match%n", elapsed / 1e9,
+						dormant / 1024, dormant / idle);
+			}
+
+			long[] latencies = play(pool, host, port, clients, moves);
+			Arrays.sort(latencies);
+			System.out.printf("%,d moves by %d clients%n", latencies.length, clients);
+			System.out.printf("Move latency: p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+					percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+					latencies[latencies.length - 1] / 1e3);
+		} finally {
+			pool.shutdownNow();
+			if (server != null)
+				server.close();
+		}
+	}
+
+	private static void createIdle(ExecutorService pool, String host, int port, int idle) throws Exception {
+		Future<?>[] tasks = new Future<?>[CONNECTIONS];
+		for (int c = 0; c < CONNECTIONS; c++) {
+			int count = idle / CONNECTIONS + ((c < idle % CONNECTIONS) ? 1 : 0);
+			tasks[c] = pool.submit(() -> {
+				try (Client client = new Client(host, port)) {
+					for (int i = 0; i < count; i++) {
+						client.send("NEW");
+					}
+				}
+				return null;
+			});
+		}
+		for (Future<?> task : tasks) {
+			task.get();
+		}
+	}
+
+	// every client plays random legal moves, starting a new match when one ends; returns the latencies in ns
+	private static long[] play(ExecutorService pool, String host, int port, int clients, int moves)
+			throws Exception {
+		long[] latencies = new long[clients * moves];
+		Future<?>[] tasks = new Future<?>[clients];
+		for (int c = 0; c < clients; c++) {
+			int offset = c * moves;
+			long seed = c;
+			tasks[c] = pool.submit(() -> {
+				Random random = new Random(seed);
+				try (Client client = new Client(host, port)) {
+					String id = client.send("NEW");
+					for (int i = 0; i < moves; i++) {
+						String[] legal = client.send("MOVES " + id).trim().split(" ");
+						if (legal[0].isEmpty()) {
+							client.send("CLOSE " + id);
+							id = client.send("NEW");
+							legal = client.send("MOVES " + id).trim().split(" ");
+						}
+						String command = "MOVE " + id + " " + legal[random.nextInt(legal.length)];
+						long start = System.nanoTime();
+						client.send(command);
+						latencies[offset + i] = System.nanoTime() - start;
+					}
+					client.send("CLOSE " + id);
+				}
+				return null;
+			});
+		}
+		for (Future<?> task : tasks) {
+			task.get();
+		}
+		return latencies;
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		int i = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(i, sorted.length - 1))] / 1e3;
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
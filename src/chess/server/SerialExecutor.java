@@ -0,0 +1,38 @@
+package chess.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Runs its tasks one at a time, in the order they were given, on another
+ * executor (the server gives it the calling thread). Every hosted match has
+ * one, so a match is only touched by one thread at a time and needs no
+ * lock. Queuing a task when none is pending starts a drain, which runs
+ * tasks until the count of pending ones drops back to zero; the atomic
+ * count orders each task after the one before.
+ */
+final class SerialExecutor implements Executor {
+	private final Executor executor;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pending = new AtomicInteger();
+
+	SerialExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		tasks.add(task);
+		if (pending.getAndIncrement() == 0)
+			executor.execute(this::drain);
+	}
+
+	private void drain() {
+		do {
+			// the tasks report their own failures, see HostedMatch.call
+			tasks.poll().run();
+		} while (pending.decrementAndGet() != 0);
+	}
+}
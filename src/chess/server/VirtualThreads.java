@@ -0,0 +1,36 @@
+package chess.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * The build targets Java 17, where virtual threads do not exist yet, so the
+ * Java 21 factory is looked up at run time. On an older runtime sessions
+ * fall back to a cached pool of daemon platform threads.
+ */
+final class VirtualThreads {
+	private VirtualThreads() {
+	}
+
+	static boolean available() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	// an executor starting one new thread per task, virtual when the runtime has them
+	static ExecutorService newThreadPerTaskExecutor(String name) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, name);
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+}